@@ -0,0 +1,51 @@
+package Agents;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Grid.Direction;
+
+/* Benchmarks of the moves of the robot
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class ManorBenchmark {
+
+	@Param({"5", "64", "256", "1024", "4096"})
+	private int size;
+
+	private Manor manor;
+	private boolean right;
+
+	@Setup
+	public void setUp() {
+		this.manor = new Manor(this.size, this.size);
+		this.manor.setRobotPosition(this.size / 2, this.size / 2);
+		this.right = true;
+	}
+
+	/** The robot goes right and left again and again
+	 * @return moved
+	 */
+	@Benchmark
+	public boolean moveRobot() {
+		this.right = !this.right;
+		return this.manor.moveRobot(this.right ? Direction.RIGHT : Direction.LEFT);
+	}
+
+}
@@ -0,0 +1,67 @@
+package Agents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Benchmark.Grids;
+import Grid.Coordinates;
+import Grid.Grid;
+
+/* Benchmarks of the path computation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class PlannerBenchmark {
+
+	@Param({"5", "64", "256", "1024", "4096"})
+	private int size;
+	// The proportion of cases containing dust or a jewel
+	@Param({"0.001", "0.01", "0.1"})
+	private double density;
+
+	private PathComputer computer;
+	private HierarchicalPlanner planner;
+	private ArrayList<Coordinates> objectives;
+
+	@Setup
+	public void setUp() {
+		Grid grid = Grids.create(this.size, this.density, 42);
+		Coordinates start = new Coordinates(this.size / 2, this.size / 2);
+		this.computer = new PathComputer(grid, start);
+		this.planner = new HierarchicalPlanner(grid, start);
+		this.objectives = this.computer.findObjectives();
+	}
+
+	@Benchmark
+	public List<Coordinates> findObjectives() {
+		return this.computer.findObjectives();
+	}
+
+	@Benchmark
+	public List<Coordinates> sortObjectives() {
+		return this.computer.sortObjectives(new ArrayList<Coordinates>(this.objectives));
+	}
+
+	@Benchmark
+	public List<Coordinates> hierarchicalPlan() {
+		return this.planner.plan(this.objectives);
+	}
+
+}
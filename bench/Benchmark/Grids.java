@@ -0,0 +1,35 @@
+package Benchmark;
+
+import java.util.SplittableRandom;
+
+import Grid.Grid;
+
+/* Builds the grids used by the benchmarks
+ */
+public class Grids {
+
+	/** Creates a grid where the given proportion of the cases contain dust (and one in four a jewel)
+	 * @param size
+	 * @param density
+	 * @param seed
+	 * @return grid
+	 */
+	public static Grid create(int size, double density, long seed) {
+		Grid grid = new Grid(size, size);
+		SplittableRandom random = new SplittableRandom(seed);
+		long nbObjectives = Math.max(1, (long) (density * size * size));
+		for (long i = 0; i < nbObjectives; i++) {
+			int x = random.nextInt(size);
+			int y = random.nextInt(size);
+			int dust = 1 + random.nextInt(4);
+			for (int d = 0; d < dust; d++) {
+				grid.addDust(x, y);
+			}
+			if (random.nextInt(4) == 0) {
+				grid.addJewel(x, y);
+			}
+		}
+		return grid;
+	}
+
+}
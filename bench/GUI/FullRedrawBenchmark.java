@@ -0,0 +1,58 @@
+package GUI;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Benchmark.Grids;
+import Grid.Grid;
+
+/* Benchmark of the drawing of every case of the map, after a resize changing the size of the cases
+ * (1 or 2 pixels wide). The canvas is as large as the map, the largest maps are left out
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FullRedrawBenchmark {
+
+	@Param({"5", "64", "256", "1024"})
+	private int size;
+	// The proportion of cases containing dust or a jewel
+	@Param({"0.001", "0.01", "0.1"})
+	private double density;
+
+	private Grid grid;
+	private GridCanvas canvas;
+	private boolean large;
+
+	@Setup
+	public void setUp() {
+		this.grid = Grids.create(this.size, this.density, 42);
+		this.canvas = new GridCanvas(this.grid);
+		this.canvas.setSize(this.size, 2 * this.size);
+		this.canvas.update(this.grid);
+		this.large = false;
+	}
+
+	@Benchmark
+	public int fullRedraw() {
+		this.large = !this.large;
+		this.canvas.setSize(this.large ? 2 * this.size : this.size, 2 * this.size);
+		this.canvas.update(this.grid);
+		return this.canvas.getWidth();
+	}
+
+}
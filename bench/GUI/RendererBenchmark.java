@@ -0,0 +1,90 @@
+package GUI;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Benchmark.Grids;
+import Grid.DensityMap;
+import Grid.Grid;
+
+/* Benchmarks of the drawing of the map (GridFrame.update), on an offscreen canvas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RendererBenchmark {
+
+	@Param({"5", "64", "256", "1024", "4096"})
+	private int size;
+	// The proportion of cases containing dust or a jewel
+	@Param({"0.001", "0.01", "0.1"})
+	private double density;
+
+	// Each canvas is notified of the modifications of its own map
+	private Grid grid;
+	private Grid zoomedOutGrid;
+	// Shows the whole map
+	private GridCanvas canvas;
+	// Zoomed out, the map is drawn from the sums of its blocks
+	private GridCanvas zoomedOutCanvas;
+	private int i;
+
+	@Setup
+	public void setUp() {
+		this.grid = Grids.create(this.size, this.density, 42);
+		this.canvas = new GridCanvas(this.grid);
+		this.canvas.setSize(1000, 1000);
+		this.canvas.update(this.grid);
+		this.zoomedOutGrid = Grids.create(this.size, this.density, 42);
+		this.zoomedOutCanvas = new GridCanvas(this.zoomedOutGrid);
+		this.zoomedOutCanvas.setSize(1000, 1000);
+		this.zoomedOutCanvas.centerOn(this.size / 2, this.size / 2, -DensityMap.BLOCK_SHIFT - 2);
+		this.zoomedOutCanvas.update(this.zoomedOutGrid);
+		this.i = 0;
+	}
+
+	/** Adds dust on a case, the successive cases being spread over the map
+	 * @param grid
+	 */
+	private void addDust(Grid grid) {
+		int x = (int) ((this.i++ * 7919L) % grid.getSizeX());
+		grid.addDust(x, (int) ((x * 31L) % grid.getSizeY()));
+	}
+
+	/** A few cases modified between two frames
+	 * @return i
+	 */
+	@Benchmark
+	public int update() {
+		for (int k = 0; k < 4; k++) {
+			this.addDust(this.grid);
+		}
+		this.canvas.update(this.grid);
+		return this.i;
+	}
+
+	/** One case modified between two frames, on the whole map zoomed out
+	 * @return i
+	 */
+	@Benchmark
+	public int zoomedOut() {
+		this.addDust(this.zoomedOutGrid);
+		this.zoomedOutCanvas.update(this.zoomedOutGrid);
+		return this.i;
+	}
+
+}
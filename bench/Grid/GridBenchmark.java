@@ -0,0 +1,61 @@
+package Grid;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Benchmark.Grids;
+
+/* Benchmarks of the copy of a grid (the observation of the robot)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class GridBenchmark {
+
+	@Param({"5", "64", "256", "1024", "4096"})
+	private int size;
+	// The proportion of cases containing dust or a jewel
+	@Param({"0.001", "0.01", "0.1"})
+	private double density;
+
+	private Grid grid;
+	private int i;
+
+	@Setup
+	public void setUp() {
+		this.grid = Grids.create(this.size, this.density, 42);
+		this.i = 0;
+	}
+
+	@Benchmark
+	public Grid copy() {
+		return new Grid(this.grid);
+	}
+
+	/** A copy followed by the modifications of a robot step : a few tiles are duplicated
+	 * @return dustLevel
+	 */
+	@Benchmark
+	public int copyThenModify() {
+		Grid copy = new Grid(this.grid);
+		int x = (int) ((this.i++ * 31L) % this.grid.getSizeX());
+		copy.addDust(x, x);
+		copy.removeDust(x, x);
+		return copy.getDustLevel(x, x);
+	}
+
+}
@@ -0,0 +1,108 @@
+package Agents;
+
+import Grid.Direction;
+
+/* An action of a robot on the manor, to be performed alone or in a batch (see Manor.perform)
+ */
+public class Action {
+
+	public enum Type {
+		MOVE,
+		SUCK_UP,
+		PICK_JEWEL
+	}
+
+	private Type type;
+	private int robotId;
+	private Direction direction;
+	private int x;
+	private int y;
+
+	/**
+	 * @param type
+	 * @param robotId
+	 * @param direction
+	 * @param x
+	 * @param y
+	 */
+	private Action(Type type, int robotId, Direction direction, int x, int y) {
+		this.type = type;
+		this.robotId = robotId;
+		this.direction = direction;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * @param robotId
+	 * @param direction
+	 * @return action
+	 * The move of a robot in a direction
+	 */
+	public static Action move(int robotId, Direction direction) {
+		return new Action(Type.MOVE, robotId, direction, 0, 0);
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return action
+	 * The suction of the [x,y] case
+	 */
+	public static Action suckUp(int x, int y) {
+		return new Action(Type.SUCK_UP, -1, null, x, y);
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return action
+	 * The pick of the jewel of the [x,y] case
+	 */
+	public static Action pickJewel(int x, int y) {
+		return new Action(Type.PICK_JEWEL, -1, null, x, y);
+	}
+
+	/**
+	 * @return type
+	 */
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 * @return robotId
+	 * The robot moved, -1 for the other actions
+	 */
+	public int getRobotId() {
+		return this.robotId;
+	}
+
+	/**
+	 * @return direction
+	 * The direction of the move, null for the other actions
+	 */
+	public Direction getDirection() {
+		return this.direction;
+	}
+
+	/**
+	 * @return x
+	 */
+	public int getX() {
+		return this.x;
+	}
+
+	/**
+	 * @return y
+	 */
+	public int getY() {
+		return this.y;
+	}
+
+	@Override
+	public String toString() {
+		return this.type == Type.MOVE ? "MOVE " + this.robotId + " " + this.direction : this.type + " [" + this.x + "," + this.y + "]";
+	}
+
+}
@@ -0,0 +1,146 @@
+package Agents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import Grid.Coordinates;
+import Grid.Grid;
+import Monitoring.Metrics;
+import Simulation.Steppable;
+
+/* A group of robots working in the same manor. The fleet observes the manor once for all
+ * its robots, shares the objectives between them, then each robot plans its own path
+ * among its objectives, in parallel
+ */
+public class Fleet implements Steppable {
+
+	private Manor environment;
+	private ArrayList<Robot> robots;
+	// The number of iterations between two allocations of the objectives
+	private int refreshRate;
+	private int beforeUpdate;
+	private long period;
+
+	public Fleet(Manor environment) {
+		this.environment = environment;
+		this.robots = new ArrayList<Robot>();
+		this.refreshRate = 20;
+		this.beforeUpdate = 1;
+		this.period = 1000;
+	}
+
+	/** Adds a new robot to the manor and to the fleet
+	 * @param x
+	 * @param y
+	 * @return robot
+	 * The new robot, null if the case is not valid or already occupied
+	 */
+	public Robot addRobot(int x, int y) {
+		int id = this.environment.addRobot(x, y);
+		if (id < 0) {
+			return null;
+		}
+		Robot robot = new Robot(this.environment, id);
+		robot.setCoordinated(true);
+		robot.setPeriod(this.period);
+		this.robots.add(robot);
+		return robot;
+	}
+
+	/** Adds a new robot to the manor and to the fleet, on the first free case from [x,y] in row order
+	 * (the walls and the other robots are skipped, the search goes back to the first case after the last one)
+	 * @param x
+	 * @param y
+	 * @return robot
+	 * The new robot, null if no case is free
+	 */
+	public Robot addRobotNear(int x, int y) {
+		Grid rooms = this.environment.getRooms();
+		long nbCases = (long) rooms.getSizeX() * rooms.getSizeY();
+		long start = (long) x * rooms.getSizeY() + y;
+		for (long k = 0; k < nbCases; k++) {
+			long c = (start + k) % nbCases;
+			int cx = (int) (c / rooms.getSizeY());
+			int cy = (int) (c % rooms.getSizeY());
+			if (rooms.isPassable(cx, cy) && !rooms.isRobot(cx, cy)) {
+				Robot robot = this.addRobot(cx, cy);
+				if (robot != null || this.environment.getRobotCount() >= Grid.MAX_ROBOTS) {
+					return robot;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return robots
+	 */
+	public List<Robot> getRobots() {
+		return Collections.unmodifiableList(this.robots);
+	}
+
+	/**
+	 * @param refreshRate
+	 */
+	public void setRefreshRate(int refreshRate) {
+		this.refreshRate = refreshRate;
+	}
+
+	@Override
+	public long getPeriod() {
+		return this.period;
+	}
+
+	/** Observes the manor, then gives each robot its objectives and lets it plan its path
+	 */
+	private void allocate() {
+		if (this.robots.isEmpty()) {
+			return;
+		}
+		long start = Metrics.get().startTimer();
+		Grid snapshot = this.environment.getRoomsCopy();
+		final List<Coordinates> positions = this.environment.getRobotPositions();
+		Metrics.get().recordObserve(start);
+		final List<List<Coordinates>> tasks = TaskAllocator.allocate(snapshot, positions, this.environment::getDensityMap);
+		// Each robot gets its own copy of the map (the tiles are shared until modified)
+		final Grid[] maps = new Grid[this.robots.size()];
+		for (int i = 0; i < maps.length; i++) {
+			maps[i] = new Grid(snapshot);
+		}
+		IntStream.range(0, this.robots.size()).parallel().forEach(i -> {
+			Robot robot = this.robots.get(i);
+			robot.assign(maps[i], positions.get(robot.getId()), tasks.get(robot.getId()));
+		});
+	}
+
+	/** One iteration of the fleet : allocation of the objectives if needed, then one action of each robot.
+	 * The actions are performed by the manor in a single batch
+	 */
+	@Override
+	public void step() {
+		if (this.beforeUpdate <= 0) {
+			this.allocate();
+			this.beforeUpdate = this.refreshRate;
+		}
+		List<Action> actions = new ArrayList<Action>(this.robots.size());
+		List<Robot> actors = new ArrayList<Robot>(this.robots.size());
+		for (Robot robot : this.robots) {
+			// Each robot chooses its action like a robot on its own (see Robot.chooseAction), the actions are performed together
+			long start = Metrics.get().startTimer();
+			Action action = robot.nextAction();
+			Metrics.get().recordChooseAction(start);
+			if (action != null) {
+				actions.add(action);
+				actors.add(robot);
+			}
+		}
+		boolean[] done = this.environment.perform(actions);
+		for (int k = 0; k < done.length; k++) {
+			actors.get(k).actionPerformed(actions.get(k), done[k]);
+		}
+		this.beforeUpdate--;
+	}
+
+}
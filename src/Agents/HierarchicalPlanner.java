@@ -0,0 +1,297 @@
+package Agents;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import Grid.Coordinates;
+import Grid.Grid;
+import Grid.Pathfinder;
+
+/* Plans a tour of many objectives in two levels : the objectives are gathered in square regions,
+ * the regions are ordered by a coarse tour of their centers, then the tour of each region is
+ * computed in parallel (greedy, then improved within the time budget) and the tours are joined.
+ * Each region is entered from the center of the previous one, so the regions are planned independently
+ */
+public class HierarchicalPlanner {
+
+	// Average number of objectives per region
+	private static final int OBJECTIVES_PER_REGION = 1024;
+
+	private Grid grid;
+	private Coordinates start;
+	private double dustExponent;
+	private long optimizationBudget;
+	// Length of the last tour before the improvement of the regions
+	private int greedyLength;
+
+	/**
+	 * @param grid
+	 * The map, giving the dust level of the objectives
+	 * @param start
+	 * The position of the robot
+	 */
+	public HierarchicalPlanner(Grid grid, Coordinates start) {
+		this.grid = grid;
+		this.start = start;
+		this.dustExponent = ObjectiveIndex.DEFAULT_DUST_EXPONENT;
+		this.optimizationBudget = 0;
+	}
+
+	/**
+	 * @param dustExponent
+	 * The distances to the objectives are divided by dust^dustExponent inside the regions
+	 */
+	public void setDustExponent(double dustExponent) {
+		this.dustExponent = dustExponent;
+	}
+
+	/**
+	 * @param optimizationBudget
+	 * Time (in milliseconds) given to the improvement of the tours, 0 to keep the greedy tours
+	 */
+	public void setOptimizationBudget(long optimizationBudget) {
+		this.optimizationBudget = optimizationBudget;
+	}
+
+	/**
+	 * @return greedyLength
+	 * The length of the last tour planned, if the greedy tours of its regions had been kept
+	 * (joined in the same order, see plan)
+	 */
+	public int getGreedyLength() {
+		return this.greedyLength;
+	}
+
+	/** Computes the tour of the objectives
+	 * @param objectives
+	 * @return tour
+	 * The objectives in the order they are visited, null if the calling thread has been interrupted
+	 */
+	public List<Coordinates> plan(List<Coordinates> objectives) {
+		final Thread caller = Thread.currentThread();
+		long budget = TimeUnit.MILLISECONDS.toNanos(this.optimizationBudget);
+		// A quarter of the budget for the coarse tour, the rest for the regions
+		long coarseDeadline = System.nanoTime() + budget / 4;
+		final List<List<Coordinates>> regions = this.cluster(objectives);
+		List<Coordinates> centers = new ArrayList<Coordinates>(regions.size());
+		for (List<Coordinates> region : regions) {
+			centers.add(center(region));
+		}
+		// Coarse tour of the regions, from their centers
+		final int[] order = this.coarseTour(centers, coarseDeadline);
+		final List<Coordinates> orderedCenters = new ArrayList<Coordinates>(order.length);
+		for (int r : order) {
+			orderedCenters.add(centers.get(r));
+		}
+		if (caller.isInterrupted()) {
+			return null;
+		}
+		// Tour of each region, in parallel
+		final long deadline = System.nanoTime() + budget - budget / 4;
+		final List<List<Coordinates>> greedyTours = new ArrayList<List<Coordinates>>(order.length);
+		final List<List<Coordinates>> tours = new ArrayList<List<Coordinates>>(order.length);
+		for (int k = 0; k < order.length; k++) {
+			greedyTours.add(null);
+			tours.add(null);
+		}
+		IntStream.range(0, order.length).parallel().forEach(k -> {
+			if (!caller.isInterrupted()) {
+				Coordinates entry = k == 0 ? this.start : orderedCenters.get(k - 1);
+				List<Coordinates> greedy = this.greedyTour(regions.get(order[k]), entry);
+				greedyTours.set(k, greedy);
+				tours.set(k, this.improveTour(greedy, entry, deadline, caller));
+			}
+		});
+		if (caller.isInterrupted()) {
+			return null;
+		}
+		// The greedy tours are joined like the improved ones, to measure what the improvement has saved
+		this.greedyLength = TourOptimizer.tourLength(this.start, this.stitch(greedyTours));
+		return this.stitch(tours);
+	}
+
+	/** Joins the tours of the regions, each of them followed forwards or backwards :
+	 * the directions minimizing the length of the jumps between the regions are chosen by dynamic programming
+	 * @param tours
+	 * The tours of the regions, in the order they are visited
+	 * @return tour
+	 */
+	private List<Coordinates> stitch(List<List<Coordinates>> tours) {
+		int nbRegions = tours.size();
+		// cost[d] : shortest length of the jumps up to the current region, followed forwards (0) or backwards (1)
+		long[] cost = new long[2];
+		boolean[][] fromBackwards = new boolean[nbRegions][2];
+		Coordinates[] exits = new Coordinates[] { this.start, this.start };
+		for (int k = 0; k < nbRegions; k++) {
+			List<Coordinates> local = tours.get(k);
+			Coordinates first = local.get(0);
+			Coordinates last = local.get(local.size() - 1);
+			long[] next = new long[2];
+			for (int d = 0; d < 2; d++) {
+				Coordinates entry = d == 0 ? first : last;
+				long forwards = cost[0] + exits[0].distance(entry);
+				long backwards = cost[1] + exits[1].distance(entry);
+				fromBackwards[k][d] = backwards < forwards;
+				next[d] = Math.min(forwards, backwards);
+			}
+			cost = next;
+			exits = new Coordinates[] { last, first };
+		}
+		// Follows the choices back from the last region
+		boolean[] backwards = new boolean[nbRegions];
+		boolean direction = cost[1] < cost[0];
+		for (int k = nbRegions - 1; k >= 0; k--) {
+			backwards[k] = direction;
+			direction = fromBackwards[k][direction ? 1 : 0];
+		}
+		int nbObjectives = 0;
+		for (List<Coordinates> local : tours) {
+			nbObjectives += local.size();
+		}
+		List<Coordinates> tour = new ArrayList<Coordinates>(nbObjectives);
+		for (int k = 0; k < nbRegions; k++) {
+			List<Coordinates> local = tours.get(k);
+			if (backwards[k]) {
+				for (int i = local.size() - 1; i >= 0; i--) {
+					tour.add(local.get(i));
+				}
+			} else {
+				tour.addAll(local);
+			}
+		}
+		return tour;
+	}
+
+	/** Gathers the objectives in square regions, sized to hold a few hundred objectives on average
+	 * @param objectives
+	 * @return regions
+	 * The objectives of each non empty region, in row order of the regions
+	 */
+	private List<List<Coordinates>> cluster(List<Coordinates> objectives) {
+		double area = (double) this.grid.getSizeX() * this.grid.getSizeY();
+		int side = Math.max(1, (int) Math.sqrt(area * OBJECTIVES_PER_REGION / Math.max(objectives.size(), 1)));
+		int regionsY = (this.grid.getSizeY() + side - 1) / side;
+		int regionsX = (this.grid.getSizeX() + side - 1) / side;
+		// Counting sort of the objectives by region
+		int[] counts = new int[regionsX * regionsY];
+		for (Coordinates c : objectives) {
+			counts[(c.x / side) * regionsY + c.y / side]++;
+		}
+		List<List<Coordinates>> byRegion = new ArrayList<List<Coordinates>>(counts.length);
+		for (int r = 0; r < counts.length; r++) {
+			byRegion.add(counts[r] > 0 ? new ArrayList<Coordinates>(counts[r]) : null);
+		}
+		for (Coordinates c : objectives) {
+			byRegion.get((c.x / side) * regionsY + c.y / side).add(c);
+		}
+		List<List<Coordinates>> regions = new ArrayList<List<Coordinates>>();
+		for (List<Coordinates> region : byRegion) {
+			if (region != null) {
+				regions.add(region);
+			}
+		}
+		return regions;
+	}
+
+	/**
+	 * @param region
+	 * @return center
+	 * The mean position of the objectives of the region
+	 */
+	private static Coordinates center(List<Coordinates> region) {
+		long sumX = 0;
+		long sumY = 0;
+		for (Coordinates c : region) {
+			sumX += c.x;
+			sumY += c.y;
+		}
+		return new Coordinates((int) (sumX / region.size()), (int) (sumY / region.size()));
+	}
+
+	/** Orders the regions : nearest center first from the robot, then improved until the deadline
+	 * @param centers
+	 * @param deadline
+	 * @return order
+	 * The indexes of the regions, in the order they are visited
+	 */
+	private int[] coarseTour(List<Coordinates> centers, long deadline) {
+		int nbRegions = centers.size();
+		boolean[] visited = new boolean[nbRegions];
+		List<Coordinates> greedy = new ArrayList<Coordinates>(nbRegions);
+		int[] indexes = new int[nbRegions];
+		Coordinates reference = this.start;
+		for (int k = 0; k < nbRegions; k++) {
+			int nearest = -1;
+			int distanceMin = Integer.MAX_VALUE;
+			for (int r = 0; r < nbRegions; r++) {
+				if (!visited[r] && reference.distance(centers.get(r)) < distanceMin) {
+					nearest = r;
+					distanceMin = reference.distance(centers.get(r));
+				}
+			}
+			visited[nearest] = true;
+			indexes[k] = nearest;
+			greedy.add(centers.get(nearest));
+			reference = centers.get(nearest);
+		}
+		if (System.nanoTime() - deadline >= 0) {
+			return indexes;
+		}
+		TourOptimizer optimizer = new TourOptimizer(this.start, greedy);
+		while (optimizer.improve(deadline) && System.nanoTime() - deadline < 0) {
+		}
+		// The centers are matched back to their regions, by identity
+		List<Coordinates> improved = optimizer.getTour();
+		IdentityHashMap<Coordinates, Integer> regionOf = new IdentityHashMap<Coordinates, Integer>();
+		for (int r = 0; r < nbRegions; r++) {
+			regionOf.put(centers.get(r), r);
+		}
+		int[] order = new int[nbRegions];
+		for (int k = 0; k < nbRegions; k++) {
+			order[k] = regionOf.get(improved.get(k));
+		}
+		return order;
+	}
+
+	/** Computes the greedy tour of one region, from the entry point
+	 * @param region
+	 * @param entry
+	 * @return tour
+	 */
+	private List<Coordinates> greedyTour(List<Coordinates> region, Coordinates entry) {
+		// Each region has its own pathfinder, which is used by a single thread
+		Pathfinder pathfinder = this.grid.getWallCount() > 0 ? new Pathfinder(this.grid) : null;
+		ObjectiveIndex index = new ObjectiveIndex(region, this.grid, this.dustExponent, pathfinder);
+		List<Coordinates> tour = new ArrayList<Coordinates>(region.size());
+		Coordinates reference = entry;
+		while (!index.isEmpty()) {
+			Coordinates nearest = index.removeNearest(reference);
+			tour.add(nearest);
+			reference = nearest;
+		}
+		return tour;
+	}
+
+	/** Improves the tour of one region until the deadline
+	 * @param tour
+	 * The greedy tour of the region, which is not modified
+	 * @param entry
+	 * @param deadline
+	 * @param caller
+	 * The thread which has asked for the plan, the computation stops when it is interrupted
+	 * @return tour
+	 */
+	private List<Coordinates> improveTour(List<Coordinates> tour, Coordinates entry, long deadline, Thread caller) {
+		if (System.nanoTime() - deadline >= 0 || caller.isInterrupted()) {
+			return tour;
+		}
+		TourOptimizer optimizer = new TourOptimizer(entry, tour);
+		while (!caller.isInterrupted() && optimizer.improve(deadline) && System.nanoTime() - deadline < 0) {
+		}
+		return optimizer.getTour();
+	}
+
+}
@@ -1,23 +1,108 @@
 package Agents;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 import GUI.GridFrame;
+import Grid.CaseReader;
 import Grid.Coordinates;
+import Grid.DensityMap;
 import Grid.Direction;
 import Grid.Grid;
+import Monitoring.Metrics;
+import Simulation.Steppable;
 
-public class Manor implements Runnable {
+/* The environment can be modified by several threads at once (environment, robots) : each case
+ * is protected by the lock of its tile stripe, and the copies of the rooms briefly take all the stripe locks,
+ * in the same order as the modifications. The GUI is notified without holding any lock
+ */
+public class Manor implements Runnable, Steppable, CaseReader {
+
+	// Number of locks protecting the cases, each one covers the tiles with the same index modulo NB_STRIPES
+	private static final int NB_STRIPES = 64;
 
 	private Grid rooms;
-	private GridFrame gui;
-	private Coordinates robotPosition;
-	private int lostPoints;
+	private volatile GridFrame gui;
+	// Notified of every modification, while the modified cases are locked
+	private volatile ManorListener listener;
+	// Position of each robot, indexed by robot id : a position is written while the cases of the robot are locked,
+	// the array is only replaced by a larger one while all the cases are locked
+	private volatile AtomicReferenceArray<Coordinates> robotPositions;
+	private volatile int nbRobots;
+	private LongAdder lostPoints;
+	// Number of jewels sucked up since the creation of the manor, never reset
+	private LongAdder lostJewels;
+	// Chooses the cases where dust and jewels are generated, only used by the thread stepping the manor
+	private SplittableRandom random;
+	// Always taken in increasing order, so that any set of them can be held at once
+	private ReentrantLock[] stripes;
+	// Dust, jewel, robot and wall counts of the blocks of the rooms, created when first needed
+	private volatile DensityMap densityMap;
+	// Time before two modifications of the environment by itself
+	private long period = 7000;
+	// Last refresh rate of the robots, shown on the GUI and sent to the viewers
+	private volatile int refreshRate = 20;
 
 	public Manor(int sizeX, int sizeY) {
-		this.rooms = new Grid(sizeX, sizeY);
+		this(sizeX, sizeY, new SplittableRandom());
+	}
+	
+	/**
+	 * @param sizeX
+	 * @param sizeY
+	 * @param random
+	 * Chooses the cases where dust and jewels are generated : a seeded generator makes
+	 * the evolution of the manor reproducible
+	 */
+	public Manor(int sizeX, int sizeY, SplittableRandom random) {
+		this(new Grid(sizeX, sizeY), random);
+	}
+	
+	/** Creates a manor on existing rooms, for instance a grid mapped from a file (see Grid.map).
+	 * The robots left in the rooms by a previous manor are removed
+	 * @param rooms
+	 * @param random
+	 */
+	public Manor(Grid rooms, SplittableRandom random) {
+		this.random = random;
+		this.rooms = rooms;
+		for (int tx = 0; tx < rooms.getTilesX(); tx++) {
+			for (int ty = 0; ty < rooms.getTilesY(); ty++) {
+				if (!rooms.isEmptyTile(tx, ty)) {
+					this.removeRobots(tx, ty);
+				}
+			}
+		}
 		this.gui = null;
-		this.lostPoints = 0;
+		this.listener = null;
+		this.robotPositions = new AtomicReferenceArray<Coordinates>(4);
+		this.nbRobots = 0;
+		this.lostPoints = new LongAdder();
+		this.lostJewels = new LongAdder();
+		this.stripes = new ReentrantLock[NB_STRIPES];
+		for (int i = 0; i < NB_STRIPES; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+	}
+
+	/** Removes the robots from the cases of a tile of the rooms
+	 * @param tx
+	 * @param ty
+	 */
+	private void removeRobots(int tx, int ty) {
+		int shift = this.rooms.getTileShift();
+		int[] tile = this.rooms.getTile(tx, ty);
+		for (int i = 0; i < tile.length; i++) {
+			if (Grid.isRobot(tile[i])) {
+				this.rooms.setRobot((tx << shift) + (i >> shift), (ty << shift) + (i & ((1 << shift) - 1)), -1);
+			}
+		}
 	}
 
 	/**
@@ -27,11 +112,175 @@ public class Manor implements Runnable {
 		return this.rooms;
 	}
 	
-	/** Returns a copy of the rooms of the manor
+	/** Returns a copy of the rooms of the manor, consistent even if other threads modify it
 	 * @return roomsCopy
 	 */
 	public Grid getRoomsCopy() {
-		return new Grid(this.rooms);
+		this.lockAll();
+		try {
+			return new Grid(this.rooms);
+		} finally {
+			this.unlockAll();
+		}
+	}
+	
+	/** Copies the cases of a rectangle of the rooms, each tile while its cases are locked : unlike getRoomsCopy,
+	 * the other tiles keep being modified meanwhile, and nothing else of the rooms is copied
+	 */
+	@Override
+	public void readCases(int x0, int y0, int x1, int y1, int[] cells) {
+		int shift = this.rooms.getTileShift();
+		for (int tx = x0 >> shift; tx <= x1 >> shift; tx++) {
+			for (int ty = y0 >> shift; ty <= y1 >> shift; ty++) {
+				int x = Math.max(x0, tx << shift);
+				int y = Math.max(y0, ty << shift);
+				this.lockCase(x, y);
+				try {
+					this.rooms.readTile(tx, ty, x0, y0, x1, y1, cells);
+				} finally {
+					this.unlockCase(x, y);
+				}
+			}
+		}
+	}
+	
+	/** Returns the sums of the blocks of the rooms, creating them the first time
+	 * (they then follow every modification of the rooms, see Grid.getDensityMap)
+	 * @return densityMap
+	 */
+	public DensityMap getDensityMap() {
+		DensityMap densityMap = this.densityMap;
+		if (densityMap == null) {
+			// The rooms are summed while no case is modified
+			this.lockAll();
+			try {
+				densityMap = this.rooms.getDensityMap();
+				this.densityMap = densityMap;
+			} finally {
+				this.unlockAll();
+			}
+		}
+		return densityMap;
+	}
+	
+	/** Reads the cases around a robot, like its sensors would. The cost only depends on the radius,
+	 * not on the size of the manor or on the number of robots : the other modifications go on meanwhile
+	 * @param id
+	 * @param radius
+	 * @return observation
+	 * The cases at most radius cases away from the robot on each axis (less on the borders of the manor),
+	 * null if there is no such robot
+	 */
+	public Observation sense(int id, int radius) {
+		// The robot does not move while it senses
+		Coordinates robotPosition = this.getRobotPosition(id);
+		if (robotPosition == null) {
+			return null;
+		}
+		int x0 = Math.max(robotPosition.x - radius, 0);
+		int y0 = Math.max(robotPosition.y - radius, 0);
+		int sizeX = Math.min(robotPosition.x + radius, this.rooms.getSizeX() - 1) - x0 + 1;
+		int sizeY = Math.min(robotPosition.y + radius, this.rooms.getSizeY() - 1) - y0 + 1;
+		int[] cells = new int[sizeX * sizeY];
+		// Only the tiles of the window are locked, one after the other
+		this.readCases(x0, y0, x0 + sizeX - 1, y0 + sizeY - 1, cells);
+		return new Observation(x0, y0, sizeX, sizeY, cells, new Coordinates(robotPosition.x, robotPosition.y));
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @return stripe
+	 * The index of the lock protecting the [x,y] case
+	 */
+	private int stripe(int x, int y) {
+		return this.rooms.getTileIndex(x, y) & (NB_STRIPES - 1);
+	}
+	
+	/** Locks the [x,y] case before modifying it
+	 * @param x
+	 * @param y
+	 */
+	private void lockCase(int x, int y) {
+		this.stripes[this.stripe(x, y)].lock();
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 */
+	private void unlockCase(int x, int y) {
+		this.stripes[this.stripe(x, y)].unlock();
+	}
+	
+	/** Locks two cases before modifying them, always in the same order to avoid deadlocks
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 */
+	private void lockCases(int x1, int y1, int x2, int y2) {
+		int s1 = this.stripe(x1, y1);
+		int s2 = this.stripe(x2, y2);
+		this.stripes[Math.min(s1, s2)].lock();
+		if (s1 != s2) {
+			this.stripes[Math.max(s1, s2)].lock();
+		}
+	}
+	
+	/**
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 */
+	private void unlockCases(int x1, int y1, int x2, int y2) {
+		int s1 = this.stripe(x1, y1);
+		int s2 = this.stripe(x2, y2);
+		if (s1 != s2) {
+			this.stripes[Math.max(s1, s2)].unlock();
+		}
+		this.stripes[Math.min(s1, s2)].unlock();
+	}
+	
+	/** Locks the given stripes, in increasing order
+	 * @param locked
+	 * True for each stripe to lock
+	 */
+	private void lockStripes(boolean[] locked) {
+		for (int s = 0; s < NB_STRIPES; s++) {
+			if (locked[s]) {
+				this.stripes[s].lock();
+			}
+		}
+	}
+	
+	/**
+	 * @param locked
+	 * True for each stripe to unlock
+	 */
+	private void unlockStripes(boolean[] locked) {
+		for (int s = NB_STRIPES - 1; s >= 0; s--) {
+			if (locked[s]) {
+				this.stripes[s].unlock();
+			}
+		}
+	}
+	
+	/** Locks all the cases, to copy the rooms or change the robots while no case is modified
+	 */
+	private void lockAll() {
+		for (int s = 0; s < NB_STRIPES; s++) {
+			this.stripes[s].lock();
+		}
+	}
+	
+	/**
+	 */
+	private void unlockAll() {
+		for (int s = NB_STRIPES - 1; s >= 0; s--) {
+			this.stripes[s].unlock();
+		}
 	}
 	
 	/**
@@ -48,77 +297,278 @@ public class Manor implements Runnable {
 		this.gui = gui;
 	}
 	
-	/** Sends the actualized version of the map to the GUI whenever it is modified,
-	 * if a GUI exists
+	/**
+	 * @return listener
 	 */
-	public synchronized void notifyGUI() {
-		if (this.gui != null) {
-			this.gui.update(this.rooms);
+	public ManorListener getListener() {
+		return this.listener;
+	}
+
+	/**
+	 * @param listener
+	 * Notified of every modification of the manor, null to remove the current one
+	 */
+	public void setListener(ManorListener listener) {
+		this.listener = listener;
+	}
+	
+	/** Tells the GUI, if it exists, that the map has been modified. It only marks its frame dirty :
+	 * the map is drawn later by the Event Dispatch Thread, the modifications never wait for it
+	 */
+	public void notifyGUI() {
+		GridFrame gui = this.gui;
+		if (gui != null) {
+			long start = Metrics.get().startTimer();
+			gui.update();
+			Metrics.get().recordNotifyGUI(start);
 		}
 	}
 
 	/** Changes the refresh rate displayed on the GUI, if it exists
 	 * @param refreshRate
 	 */
-	public synchronized void notifyRefreshRateGUI(int refreshRate) {
-		if (this.gui != null) {
-			this.gui.updateRefreshRate(refreshRate);
+	public void notifyRefreshRateGUI(int refreshRate) {
+		this.refreshRate = refreshRate;
+		GridFrame gui = this.gui;
+		if (gui != null) {
+			gui.updateRefreshRate(refreshRate);
 		}
 	}
 
+	/**
+	 * @return refreshRate
+	 * The last refresh rate notified by a robot (see notifyRefreshRateGUI)
+	 */
+	public int getRefreshRate() {
+		return this.refreshRate;
+	}
+
 	/** Increments the counter of lost jewels on the GUI, if it exists
 	 */
-	public synchronized void notifyJewelsGUI() {
-		if (this.gui != null) {
-			this.gui.updateLostJewels();
+	public void notifyJewelsGUI() {
+		GridFrame gui = this.gui;
+		if (gui != null) {
+			gui.updateLostJewels();
 		}
 	}
 	
-	/** Sets the position of the robot on the map
+	/** Sets the position of the robot 0 on the map, adding it if there is no robot yet
 	 * @param x
 	 * @param y
 	 * @return isValid
 	 * True if the position is valid, else false
 	 */
 	public boolean setRobotPosition(int x, int y) {
-		if (this.isValidCase(x, y)) {
-			this.robotPosition = new Coordinates(x, y);
-			this.getRooms().getCase(x, y).setRobot(true);
-			return true;
+		if (this.nbRobots == 0) {
+			return this.addRobot(x, y) >= 0;
+		}
+		return this.setRobotPosition(0, x, y);
+	}
+	
+	/** Sets the position of a robot on the map
+	 * @param id
+	 * @param x
+	 * @param y
+	 * @return isValid
+	 * True if the robot exists and the position is valid and free, else false
+	 */
+	public boolean setRobotPosition(int id, int x, int y) {
+		return this.placeRobot(id, x, y, null);
+	}
+	
+	/** Puts a robot on the [x,y] case, then notifies the listener of the placement or of the move
+	 * @param id
+	 * @param x
+	 * @param y
+	 * @param dir
+	 * The direction of the move, null if the robot is placed
+	 * @return isValid
+	 */
+	private boolean placeRobot(int id, int x, int y, Direction dir) {
+		Coordinates oldPosition = this.getRobotPosition(id);
+		if (oldPosition == null || !this.isValidCase(x, y)) {
+			return false;
+		}
+		this.lockCases(oldPosition.x, oldPosition.y, x, y);
+		try {
+			return this.placeRobotLocked(id, oldPosition, x, y, dir);
+		} finally {
+			this.unlockCases(oldPosition.x, oldPosition.y, x, y);
+		}
+	}
+	
+	/** Same as placeRobot, once the cases are locked
+	 * @param id
+	 * @param oldPosition
+	 * @param x
+	 * @param y
+	 * @param dir
+	 * @return isValid
+	 */
+	private boolean placeRobotLocked(int id, Coordinates oldPosition, int x, int y, Direction dir) {
+		// Another robot may have taken the case in the meantime
+		if (!this.isFreeCase(id, x, y)) {
+			return false;
+		}
+		if (this.rooms.getRobotId(oldPosition.x, oldPosition.y) == id) {
+			this.rooms.setRobot(oldPosition.x, oldPosition.y, -1);
 		}
-		return false;
+		this.robotPositions.set(id, new Coordinates(x, y));
+		this.rooms.setRobot(x, y, id);
+		ManorListener listener = this.listener;
+		if (listener != null) {
+			if (dir == null) {
+				listener.robotPlaced(id, x, y);
+			} else {
+				listener.robotMoved(id, dir);
+			}
+		}
+		return true;
+	}
+	
+	/** Adds a new robot on the map
+	 * @param x
+	 * @param y
+	 * @return id
+	 * The id of the new robot, -1 if the case is not valid or already occupied
+	 */
+	public int addRobot(int x, int y) {
+		if (!this.isValidCase(x, y)) {
+			return -1;
+		}
+		// The robots are added while no other modification happens
+		this.lockAll();
+		try {
+			if (this.rooms.isRobot(x, y) || this.nbRobots >= Grid.MAX_ROBOTS) {
+				return -1;
+			}
+			int id = this.nbRobots;
+			if (id == this.robotPositions.length()) {
+				AtomicReferenceArray<Coordinates> positions = new AtomicReferenceArray<Coordinates>(2 * id);
+				for (int i = 0; i < id; i++) {
+					positions.set(i, this.robotPositions.get(i));
+				}
+				this.robotPositions = positions;
+			}
+			this.robotPositions.set(id, new Coordinates(x, y));
+			this.nbRobots = id + 1;
+			this.rooms.setRobot(x, y, id);
+			ManorListener listener = this.listener;
+			if (listener != null) {
+				listener.robotPlaced(id, x, y);
+			}
+			return id;
+		} finally {
+			this.unlockAll();
+		}
+	}
+	
+	/**
+	 * @return nbRobots
+	 */
+	public int getRobotCount() {
+		return this.nbRobots;
 	}
 	
 	/**
-	 * @return xRobot
+	 * @return robotPosition
+	 * The position of the robot 0
 	 */
 	public Coordinates getRobotPosition() {
-		return this.robotPosition;
+		return this.getRobotPosition(0);
+	}
+	
+	/**
+	 * @param id
+	 * @return robotPosition
+	 */
+	public Coordinates getRobotPosition(int id) {
+		if (id < 0 || id >= this.nbRobots) {
+			return null;
+		}
+		return this.robotPositions.get(id);
+	}
+	
+	/**
+	 * @return robotPositions
+	 * A copy of the positions of all the robots, indexed by robot id
+	 */
+	public List<Coordinates> getRobotPositions() {
+		int nbRobots = this.nbRobots;
+		List<Coordinates> positions = new ArrayList<Coordinates>(nbRobots);
+		for (int id = 0; id < nbRobots; id++) {
+			Coordinates c = this.robotPositions.get(id);
+			positions.add(new Coordinates(c.x, c.y));
+		}
+		return positions;
 	}
 	
 	/**
 	 * @return lostPoints
 	 */
 	public int getLostPoints() {
-		return this.lostPoints;
+		return (int) this.lostPoints.sum();
+	}
+	
+	/**
+	 * @return lostJewels
+	 * The number of jewels sucked up since the creation of the manor
+	 */
+	public long getLostJewels() {
+		return this.lostJewels.sum();
 	}
 	
 	/** Resets the number of points lost
 	 */
 	public void resetPoints() {
-		this.lostPoints = 0;
+		this.lostPoints.reset();
 	}
 	
-	/** Asks the environment to move the robot from one case in a given direction
+	/** Returns the number of points lost, and resets it
+	 * @return lostPoints
+	 */
+	public int takeLostPoints() {
+		return (int) this.lostPoints.sumThenReset();
+	}
+	
+	/** Asks the environment to move the robot 0 from one case in a given direction
 	 * @param dir
 	 * @return authorizedMove
-	 * True if the move is legal, ie if the robot is not heading outside the grid,
-	 * or staying at the same place
 	 */
 	public boolean moveRobot(Direction dir) {
+		return this.moveRobot(0, dir);
+	}
+	
+	/** Asks the environment to move a robot from one case in a given direction
+	 * @param id
+	 * @param dir
+	 * @return authorizedMove
+	 * True if the move is legal, ie if the robot is not heading outside the grid,
+	 * onto another robot, or staying at the same place
+	 */
+	public boolean moveRobot(int id, Direction dir) {
 		boolean authorizedMove = false;
-		int oldX = this.robotPosition.x;
-		int oldY = this.robotPosition.y;
+		Coordinates destination = this.destination(id, dir);
+		// The robot can't go outside the grid, onto another robot, or stay at the same place (when calling "move")
+		if (destination != null && this.placeRobot(id, destination.x, destination.y, dir)) {
+			authorizedMove = true;
+			// The GUI is notified of the changes
+			this.notifyGUI();
+		}
+		return authorizedMove;
+	}
+	
+	/**
+	 * @param id
+	 * @param dir
+	 * @return destination
+	 * The case next to the robot in the given direction, null if the robot does not exist or does not move
+	 */
+	private Coordinates destination(int id, Direction dir) {
+		Coordinates robotPosition = this.getRobotPosition(id);
+		if (robotPosition == null) {
+			return null;
+		}
 		int dx = 0;
 		int dy = 0;
 		switch (dir) {
@@ -133,27 +583,81 @@ public class Manor implements Runnable {
 		default: System.out.println(" # Where am I supposed to go ?!");
 			break;
 		}
-		// The robot can't go outside the grid, or stay at the same place (when calling "move")
-		if (this.isValidCase(oldX + dx, oldY + dy) && (dx != 0 || dy != 0)) {
-			// Set robot to false in the previous location
-			this.rooms.getCase(oldX, oldY).setRobot(false);
-			// Set it to true in the destination case
-			this.setRobotPosition(oldX + dx, oldY + dy);
-			authorizedMove = true;
-			// The GUI is notified of the changes
-			this.notifyGUI();
+		if (dx == 0 && dy == 0) {
+			return null;
 		}
-		return authorizedMove;
+		return new Coordinates(robotPosition.x + dx, robotPosition.y + dy);
 	}
 	
 	/**
 	 * @param x
 	 * @param y
 	 * @return validCase
-	 * True if the case with given coordinates exists, else false
+	 * True if the case with given coordinates exists and is not a wall, else false
 	 */
 	private boolean isValidCase(int x, int y) {
-		return (x >= 0) && (y >= 0) && (x < this.rooms.getSizeX()) && (y < this.rooms.getSizeY());
+		return this.rooms.isPassable(x, y);
+	}
+	
+	/** Builds a wall on the [x,y] case, or removes it
+	 * @param x
+	 * @param y
+	 * @param wall
+	 * @return done
+	 * False if the case does not exist, a robot is on it, or it already is (or is not) a wall
+	 */
+	public boolean setWall(int x, int y, boolean wall) {
+		if (!this.rooms.isInside(x, y)) {
+			return false;
+		}
+		this.lockCase(x, y);
+		try {
+			int cell = this.rooms.getCell(x, y);
+			if (Grid.isRobot(cell) || Grid.isWall(cell) == wall) {
+				return false;
+			}
+			// Nothing is left on a new wall, the case of a removed wall is left as it is
+			this.rooms.setCell(x, y, wall ? Grid.WALL_BIT : cell & ~Grid.WALL_BIT);
+			ManorListener listener = this.listener;
+			if (listener != null) {
+				listener.wallChanged(x, y, wall);
+			}
+			return true;
+		} finally {
+			this.unlockCase(x, y);
+		}
+	}
+	
+	/** Divides the manor in square rooms, separated by walls with a door in the middle of each of them
+	 * @param roomSize
+	 * The side of the rooms, walls included
+	 */
+	public void buildRooms(int roomSize) {
+		for (int x = 0; x < this.rooms.getSizeX(); x++) {
+			for (int y = 0; y < this.rooms.getSizeY(); y++) {
+				// The walls are on the last row and column of each room, except on the last rooms
+				boolean wallX = x % roomSize == roomSize - 1 && x < this.rooms.getSizeX() - 1;
+				boolean wallY = y % roomSize == roomSize - 1 && y < this.rooms.getSizeY() - 1;
+				boolean door = (wallX && !wallY && y % roomSize == roomSize / 2)
+						|| (wallY && !wallX && x % roomSize == roomSize / 2);
+				if ((wallX || wallY) && !door) {
+					this.setWall(x, y, true);
+				}
+			}
+		}
+		this.notifyGUI();
+	}
+	
+	/**
+	 * @param id
+	 * @param x
+	 * @param y
+	 * @return freeCase
+	 * True if no robot other than the given one is on the case, else false
+	 */
+	private boolean isFreeCase(int id, int x, int y) {
+		int occupant = this.rooms.getRobotId(x, y);
+		return occupant < 0 || occupant == id;
 	}
 	
 	/** Asks the environment to remove one unity of dust from the (x, y) case, and the
@@ -162,26 +666,188 @@ public class Manor implements Runnable {
 	 * @param y
 	 */
 	public void suckUp(int x, int y) {
-		this.rooms.getCase(x, y).removeDust();
-		if (this.rooms.getCase(x, y).removeJewel()) {
-			this.lostPoints += 10;
-			//System.out.println("Jewel lost !");
-			this.notifyJewelsGUI();
+		boolean jewelLost;
+		this.lockCase(x, y);
+		try {
+			jewelLost = this.suckUpLocked(x, y);
+		} finally {
+			this.unlockCase(x, y);
+		}
+		if (jewelLost) {
+			this.loseJewel();
 		}
 		// The GUI is notified of the changes
 		this.notifyGUI();
 	}
 	
+	/** Same as suckUp, once the case is locked and without notifying the GUI
+	 * @param x
+	 * @param y
+	 * @return jewelLost
+	 * True if a jewel has been sucked up
+	 */
+	private boolean suckUpLocked(int x, int y) {
+		this.rooms.removeDust(x, y);
+		boolean jewelLost = this.rooms.removeJewel(x, y);
+		ManorListener listener = this.listener;
+		if (listener != null) {
+			listener.suckedUp(x, y);
+		}
+		return jewelLost;
+	}
+	
+	/** Counts a jewel sucked up
+	 */
+	private void loseJewel() {
+		this.lostPoints.add(10);
+		this.lostJewels.increment();
+		Metrics.get().countLostJewel();
+		//System.out.println("Jewel lost !");
+		this.notifyJewelsGUI();
+	}
+	
 	/** Asks the environment to pick (remove) the jewel from the (x, y) case
 	 * @param x
 	 * @param y
 	 */
 	public void pickJewel(int x, int y) {
-		this.rooms.getCase(x, y).removeJewel();
+		this.lockCase(x, y);
+		try {
+			this.pickJewelLocked(x, y);
+		} finally {
+			this.unlockCase(x, y);
+		}
 		// The GUI is notified of the changes
 		this.notifyGUI();
 	}
 	
+	/** Same as pickJewel, once the case is locked and without notifying the GUI
+	 * @param x
+	 * @param y
+	 */
+	private void pickJewelLocked(int x, int y) {
+		this.rooms.removeJewel(x, y);
+		ManorListener listener = this.listener;
+		if (listener != null) {
+			listener.jewelPicked(x, y);
+		}
+	}
+	
+	/** Performs one action of a robot
+	 * @param action
+	 * @return done
+	 * True if the action has been performed, false if it is not valid (a move outside the grid or onto another robot,
+	 * an action on a case outside the grid)
+	 */
+	public boolean perform(Action action) {
+		switch (action.getType()) {
+		case MOVE:
+			return this.moveRobot(action.getRobotId(), action.getDirection());
+		case SUCK_UP:
+			if (!this.isValidCase(action.getX(), action.getY())) {
+				return false;
+			}
+			this.suckUp(action.getX(), action.getY());
+			return true;
+		case PICK_JEWEL:
+			if (!this.isValidCase(action.getX(), action.getY())) {
+				return false;
+			}
+			this.pickJewel(action.getX(), action.getY());
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/** Performs a sequence of actions at once : they are validated and applied in one pass, while the cases
+	 * they may modify are locked, then the GUI is notified once. The result is the same as performing
+	 * the actions one by one, in the same order. The robots of the actions must not be moved by another thread meanwhile
+	 * @param actions
+	 * @return done
+	 * For each action, true if it has been performed (see perform(Action))
+	 */
+	public boolean[] perform(List<Action> actions) {
+		boolean[] done = new boolean[actions.size()];
+		int nbLostJewels = 0;
+		boolean modified = false;
+		boolean[] locked = this.stripesOf(actions);
+		this.lockStripes(locked);
+		try {
+			for (int k = 0; k < done.length; k++) {
+				Action action = actions.get(k);
+				switch (action.getType()) {
+				case MOVE: {
+					Coordinates destination = this.destination(action.getRobotId(), action.getDirection());
+					done[k] = destination != null && this.isValidCase(destination.x, destination.y)
+							&& this.placeRobotLocked(action.getRobotId(), this.robotPositions.get(action.getRobotId()),
+									destination.x, destination.y, action.getDirection());
+					break;
+				}
+				case SUCK_UP:
+					done[k] = this.isValidCase(action.getX(), action.getY());
+					if (done[k] && this.suckUpLocked(action.getX(), action.getY())) {
+						nbLostJewels++;
+					}
+					break;
+				case PICK_JEWEL:
+					done[k] = this.isValidCase(action.getX(), action.getY());
+					if (done[k]) {
+						this.pickJewelLocked(action.getX(), action.getY());
+					}
+					break;
+				}
+				modified |= done[k];
+			}
+		} finally {
+			this.unlockStripes(locked);
+		}
+		for (int k = 0; k < nbLostJewels; k++) {
+			this.loseJewel();
+		}
+		// A single notification for all the changes
+		if (modified) {
+			this.notifyGUI();
+		}
+		return done;
+	}
+	
+	/** Finds the stripes of the cases a sequence of actions may modify : the cases sucked up or picked,
+	 * and the cases a robot moving k times may go through, at most k cases away from its position
+	 * @param actions
+	 * @return stripes
+	 * True for each stripe to lock
+	 */
+	private boolean[] stripesOf(List<Action> actions) {
+		boolean[] stripes = new boolean[NB_STRIPES];
+		Map<Integer, Integer> nbMoves = new HashMap<Integer, Integer>();
+		for (Action action : actions) {
+			if (action.getType() == Action.Type.MOVE) {
+				Integer n = nbMoves.get(action.getRobotId());
+				nbMoves.put(action.getRobotId(), n == null ? 1 : n + 1);
+			} else if (this.rooms.isInside(action.getX(), action.getY())) {
+				stripes[this.stripe(action.getX(), action.getY())] = true;
+			}
+		}
+		int shift = this.rooms.getTileShift();
+		for (Map.Entry<Integer, Integer> moves : nbMoves.entrySet()) {
+			Coordinates position = this.getRobotPosition(moves.getKey());
+			if (position == null) {
+				continue;
+			}
+			int x0 = Math.max(position.x - moves.getValue(), 0);
+			int y0 = Math.max(position.y - moves.getValue(), 0);
+			int x1 = Math.min(position.x + moves.getValue(), this.rooms.getSizeX() - 1);
+			int y1 = Math.min(position.y + moves.getValue(), this.rooms.getSizeY() - 1);
+			for (int tx = x0 >> shift; tx <= x1 >> shift; tx++) {
+				for (int ty = y0 >> shift; ty <= y1 >> shift; ty++) {
+					stripes[this.stripe(Math.max(x0, tx << shift), Math.max(y0, ty << shift))] = true;
+				}
+			}
+		}
+		return stripes;
+	}
+	
 	/** The environment generates a fixed amount of dust in randomly chosen cases
 	 */
 	private void generateDust() {
@@ -189,9 +855,30 @@ public class Manor implements Runnable {
 		int randX = 0;
 		int randY = 0;
 		for (int i = 0; i < dustQuantity; i++) {
-			randX = ThreadLocalRandom.current().nextInt(0, this.rooms.getSizeX());
-			randY = ThreadLocalRandom.current().nextInt(0, this.rooms.getSizeY());
-			this.rooms.getCase(randX, randY).addDust();
+			randX = this.random.nextInt(0, this.rooms.getSizeX());
+			randY = this.random.nextInt(0, this.rooms.getSizeY());
+			this.addDust(randX, randY);
+		}
+	}
+	
+	/** Generates one unity of dust on the (x, y) case, unless it is a wall
+	 * @param x
+	 * @param y
+	 */
+	public void addDust(int x, int y) {
+		this.lockCase(x, y);
+		try {
+			// Nothing falls on the walls
+			if (this.rooms.isWall(x, y)) {
+				return;
+			}
+			this.rooms.addDust(x, y);
+			ManorListener listener = this.listener;
+			if (listener != null) {
+				listener.dustGenerated(x, y);
+			}
+		} finally {
+			this.unlockCase(x, y);
 		}
 	}
 	
@@ -202,25 +889,62 @@ public class Manor implements Runnable {
 		int randX = 0;
 		int randY = 0;
 		for (int i = 0; i < jewelQuantity; i++) {
-			randX = ThreadLocalRandom.current().nextInt(0, this.rooms.getSizeX());
-			randY = ThreadLocalRandom.current().nextInt(0, this.rooms.getSizeY());
-			this.rooms.getCase(randX, randY).addJewel();
+			randX = this.random.nextInt(0, this.rooms.getSizeX());
+			randY = this.random.nextInt(0, this.rooms.getSizeY());
+			this.addJewel(randX, randY);
 		}
 	}
 	
+	/** Generates a jewel on the (x, y) case, unless it is a wall
+	 * @param x
+	 * @param y
+	 */
+	public void addJewel(int x, int y) {
+		this.lockCase(x, y);
+		try {
+			if (this.rooms.isWall(x, y)) {
+				return;
+			}
+			this.rooms.addJewel(x, y);
+			ManorListener listener = this.listener;
+			if (listener != null) {
+				listener.jewelGenerated(x, y);
+			}
+		} finally {
+			this.unlockCase(x, y);
+		}
+	}
+	
+	/**
+	 * @param period
+	 */
+	public void setPeriod(long period) {
+		this.period = period;
+	}
+	
+	@Override
+	public long getPeriod() {
+		return this.period;
+	}
+	
+	/** The environment modifies itself once
+	 */
+	@Override
+	public void step() {
+		this.generateDust();
+		this.generateJewel();
+		// The GUI is notified of the changes
+		this.notifyGUI();
+	}
+	
 	@Override
 	public void run() {
 		// The environment runs permanently
 		while (true) {
 			try {
-				// Time before two modifications of the environment by itself
-				int sleepTime = 7000;
-				this.generateDust();
-				this.generateJewel();
-				// The GUI is notified of the changes
-				this.notifyGUI();
+				this.step();
 				// The environment waits before next modification
-				TimeUnit.MILLISECONDS.sleep(sleepTime);
+				TimeUnit.MILLISECONDS.sleep(this.period);
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 			}
@@ -0,0 +1,55 @@
+package Agents;
+
+import Grid.Direction;
+
+/* Notified of every modification of a manor, in an order which reproduces the same manor
+ * when the modifications are applied again one after the other. The calls are made
+ * while the modified cases are locked : they must be short and must not call the manor back
+ */
+public interface ManorListener {
+	
+	/** Called after one unity of dust has been generated on the [x,y] case
+	 * @param x
+	 * @param y
+	 */
+	void dustGenerated(int x, int y);
+	
+	/** Called after a jewel has been generated on the [x,y] case
+	 * @param x
+	 * @param y
+	 */
+	void jewelGenerated(int x, int y);
+	
+	/** Called after a robot has been added or put on the [x,y] case
+	 * @param id
+	 * @param x
+	 * @param y
+	 */
+	void robotPlaced(int id, int x, int y);
+	
+	/** Called after a robot has moved
+	 * @param id
+	 * @param dir
+	 */
+	void robotMoved(int id, Direction dir);
+	
+	/** Called after the [x,y] case has been sucked up
+	 * @param x
+	 * @param y
+	 */
+	void suckedUp(int x, int y);
+	
+	/** Called after the jewel of the [x,y] case has been picked
+	 * @param x
+	 * @param y
+	 */
+	void jewelPicked(int x, int y);
+	
+	/** Called after a wall has been built on the [x,y] case (nothing else is left on it), or removed from it
+	 * @param x
+	 * @param y
+	 * @param wall
+	 */
+	void wallChanged(int x, int y, boolean wall);
+	
+}
@@ -0,0 +1,220 @@
+package Agents;
+
+import java.util.List;
+
+import Grid.Coordinates;
+import Grid.DistanceField;
+import Grid.Grid;
+import Grid.Pathfinder;
+
+/* Spatial index of the objectives, answering nearest objective queries where the distance
+ * to an objective is divided by sqrt(dust) (by default), to favour the cases with lots of dust.
+ * The objectives are stored in square buckets, searched in rings around the reference case.
+ * When a pathfinder is given, the distances are the lengths of the shortest paths around the walls :
+ * the Manhattan distance of a bucket still bounds them from below, so that the same buckets are pruned
+ */
+public class ObjectiveIndex {
+
+	// Average number of objectives per bucket
+	private static final int OBJECTIVES_PER_BUCKET = 2;
+	// The distances are divided by dust^DEFAULT_DUST_EXPONENT, ie sqrt(dust)
+	public static final double DEFAULT_DUST_EXPONENT = 0.5;
+
+	private Coordinates[] objectives;
+	// dust^exponent of each objective
+	private double[] weights;
+	private int sizeX;
+	private int sizeY;
+	private int remaining;
+	// Number of objectives when the buckets were last built
+	private int built;
+	private int bucketShift;
+	private int bucketsX;
+	private int bucketsY;
+	// The objectives of bucket b are items[bucketStart[b]] to items[bucketStart[b] + bucketSize[b] - 1]
+	private int[] items;
+	private int[] bucketStart;
+	private int[] bucketSize;
+	// Highest weight of the objectives placed in each bucket
+	private double[] bucketWeight;
+	private double maxWeight;
+	// Computes the distances around the walls, null for the Manhattan distances
+	private Pathfinder pathfinder;
+
+	/**
+	 * @param objectives
+	 * @param grid
+	 * The map, giving the dust level of the objectives
+	 */
+	public ObjectiveIndex(List<Coordinates> objectives, Grid grid) {
+		this(objectives, grid, DEFAULT_DUST_EXPONENT);
+	}
+
+	/**
+	 * @param objectives
+	 * @param grid
+	 * @param dustExponent
+	 * The distances are divided by dust^dustExponent, 0 to ignore the dust level
+	 */
+	public ObjectiveIndex(List<Coordinates> objectives, Grid grid, double dustExponent) {
+		this(objectives, grid, dustExponent, null);
+	}
+
+	/**
+	 * @param objectives
+	 * @param grid
+	 * @param dustExponent
+	 * @param pathfinder
+	 * Computes the distances around the walls of the grid, null for the Manhattan distances
+	 */
+	public ObjectiveIndex(List<Coordinates> objectives, Grid grid, double dustExponent, Pathfinder pathfinder) {
+		this.pathfinder = pathfinder;
+		int nbObjectives = objectives.size();
+		this.objectives = objectives.toArray(new Coordinates[nbObjectives]);
+		this.weights = new double[nbObjectives];
+		this.sizeX = grid.getSizeX();
+		this.sizeY = grid.getSizeY();
+		for (int i = 0; i < nbObjectives; i++) {
+			double dust = grid.getDustLevel(this.objectives[i].x, this.objectives[i].y);
+			if (dust == 0) dust++;
+			this.weights[i] = dustExponent == DEFAULT_DUST_EXPONENT ? Math.sqrt(dust) : Math.pow(dust, dustExponent);
+		}
+		this.items = new int[nbObjectives];
+		for (int i = 0; i < nbObjectives; i++) {
+			this.items[i] = i;
+		}
+		this.remaining = nbObjectives;
+		this.build();
+	}
+
+	/**
+	 * @return empty
+	 * True if all the objectives have been removed
+	 */
+	public boolean isEmpty() {
+		return this.remaining == 0;
+	}
+
+	/** Places the remaining objectives in buckets sized for their number
+	 */
+	private void build() {
+		int[] alive = new int[this.remaining];
+		int n = 0;
+		if (this.bucketStart == null) {
+			System.arraycopy(this.items, 0, alive, 0, this.remaining);
+			n = this.remaining;
+		} else {
+			for (int b = 0; b < this.bucketStart.length; b++) {
+				for (int k = 0; k < this.bucketSize[b]; k++) {
+					alive[n++] = this.items[this.bucketStart[b] + k];
+				}
+			}
+		}
+		this.built = n;
+		// The side of a bucket is a power of 2, chosen to hold a few objectives on average
+		double area = (double) this.sizeX * this.sizeY;
+		int side = (int) Math.sqrt(area * OBJECTIVES_PER_BUCKET / Math.max(n, 1));
+		this.bucketShift = Math.max(0, 31 - Integer.numberOfLeadingZeros(Math.max(side, 1)));
+		this.bucketsX = ((this.sizeX - 1) >> this.bucketShift) + 1;
+		this.bucketsY = ((this.sizeY - 1) >> this.bucketShift) + 1;
+		int nbBuckets = this.bucketsX * this.bucketsY;
+		this.bucketStart = new int[nbBuckets];
+		this.bucketSize = new int[nbBuckets];
+		this.bucketWeight = new double[nbBuckets];
+		this.maxWeight = 0;
+		for (int k = 0; k < n; k++) {
+			this.bucketSize[this.bucketOf(this.objectives[alive[k]])]++;
+		}
+		for (int b = 1; b < nbBuckets; b++) {
+			this.bucketStart[b] = this.bucketStart[b - 1] + this.bucketSize[b - 1];
+		}
+		this.items = new int[n];
+		int[] filled = new int[nbBuckets];
+		for (int k = 0; k < n; k++) {
+			int o = alive[k];
+			int b = this.bucketOf(this.objectives[o]);
+			this.items[this.bucketStart[b] + filled[b]++] = o;
+			this.bucketWeight[b] = Math.max(this.bucketWeight[b], this.weights[o]);
+			this.maxWeight = Math.max(this.maxWeight, this.weights[o]);
+		}
+	}
+
+	/**
+	 * @param c
+	 * @return bucket
+	 */
+	private int bucketOf(Coordinates c) {
+		return (c.x >> this.bucketShift) * this.bucketsY + (c.y >> this.bucketShift);
+	}
+
+	/** Finds the objective minimizing distance / dust^exponent from the reference case, then removes it.
+	 * Ties are broken by the order of the objectives given to the index
+	 * @param reference
+	 * @return nearest
+	 * The nearest objective, or null if there is none left
+	 */
+	public Coordinates removeNearest(Coordinates reference) {
+		if (this.remaining == 0) {
+			return null;
+		}
+		// When most objectives have been removed, the buckets are rebuilt larger
+		if (this.remaining * 4 < this.built) {
+			this.build();
+		}
+		int side = 1 << this.bucketShift;
+		int bx = Math.min(Math.max(reference.x >> this.bucketShift, 0), this.bucketsX - 1);
+		int by = Math.min(Math.max(reference.y >> this.bucketShift, 0), this.bucketsY - 1);
+		int maxRing = Math.max(Math.max(bx, this.bucketsX - 1 - bx), Math.max(by, this.bucketsY - 1 - by));
+		int best = -1;
+		int bestBucket = -1;
+		int bestPosition = -1;
+		double bestScore = Double.POSITIVE_INFINITY;
+		// All the distances of the search are read in the field of the reference case
+		DistanceField field = this.pathfinder != null && this.pathfinder.hasWalls() ? this.pathfinder.getField(reference) : null;
+		for (int r = 0; r <= maxRing; r++) {
+			// Every case of the ring is at least this far from the reference
+			int ringDistance = r == 0 ? 0 : (r - 1) * side + 1;
+			if ((double) ringDistance / this.maxWeight > bestScore) {
+				break;
+			}
+			for (int i = Math.max(bx - r, 0); i <= Math.min(bx + r, this.bucketsX - 1); i++) {
+				boolean edge = i == bx - r || i == bx + r;
+				// Inside the ring, only the first and last columns belong to it
+				int step = edge ? 1 : 2 * r;
+				for (int j = by - r; j <= by + r; j += step) {
+					if (j < 0 || j >= this.bucketsY) {
+						continue;
+					}
+					int b = i * this.bucketsY + j;
+					if (this.bucketSize[b] == 0) {
+						continue;
+					}
+					// Prunes the buckets which cannot contain a better objective
+					int dx = Math.max(0, Math.max((i << this.bucketShift) - reference.x, reference.x - ((i + 1) * side - 1)));
+					int dy = Math.max(0, Math.max((j << this.bucketShift) - reference.y, reference.y - ((j + 1) * side - 1)));
+					if ((double) (dx + dy) / this.bucketWeight[b] > bestScore) {
+						continue;
+					}
+					for (int k = 0; k < this.bucketSize[b]; k++) {
+						int o = this.items[this.bucketStart[b] + k];
+						Coordinates objective = this.objectives[o];
+						int distance = field != null ? field.get(objective.x, objective.y) : reference.distance(objective);
+						double score = (double) distance / this.weights[o];
+						if (score < bestScore || (score == bestScore && o < best)) {
+							best = o;
+							bestScore = score;
+							bestBucket = b;
+							bestPosition = k;
+						}
+					}
+				}
+			}
+		}
+		// Removes the objective by moving the last one of its bucket in its place
+		int last = this.bucketStart[bestBucket] + --this.bucketSize[bestBucket];
+		this.items[this.bucketStart[bestBucket] + bestPosition] = this.items[last];
+		this.remaining--;
+		return this.objectives[best];
+	}
+
+}
@@ -0,0 +1,96 @@
+package Agents;
+
+import Grid.Coordinates;
+import Grid.Grid;
+
+/* What a robot senses around itself : the packed cases of a window of the manor,
+ * and the position of the robot when they were read
+ */
+public class Observation {
+
+	private int originX;
+	private int originY;
+	private int sizeX;
+	private int sizeY;
+	// The packed cases of the window, in row order
+	private int[] cells;
+	private Coordinates position;
+
+	/**
+	 * @param originX
+	 * @param originY
+	 * The first case of the window in the manor
+	 * @param sizeX
+	 * @param sizeY
+	 * @param cells
+	 * @param position
+	 */
+	public Observation(int originX, int originY, int sizeX, int sizeY, int[] cells, Coordinates position) {
+		this.originX = originX;
+		this.originY = originY;
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.cells = cells;
+		this.position = position;
+	}
+
+	/**
+	 * @return originX
+	 */
+	public int getOriginX() {
+		return this.originX;
+	}
+
+	/**
+	 * @return originY
+	 */
+	public int getOriginY() {
+		return this.originY;
+	}
+
+	/**
+	 * @return sizeX
+	 */
+	public int getSizeX() {
+		return this.sizeX;
+	}
+
+	/**
+	 * @return sizeY
+	 */
+	public int getSizeY() {
+		return this.sizeY;
+	}
+
+	/**
+	 * @return position
+	 * The position of the robot
+	 */
+	public Coordinates getPosition() {
+		return this.position;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return cell
+	 * The packed value of the [x,y] case of the manor, which must be in the window
+	 */
+	public int getCell(int x, int y) {
+		return this.cells[(x - this.originX) * this.sizeY + (y - this.originY)];
+	}
+
+	/** Copies the cases of the window into a map of the manor. The cases outside the window keep
+	 * their previous value, and only the cases which have changed are written
+	 * @param map
+	 */
+	public void mergeInto(Grid map) {
+		int k = 0;
+		for (int x = this.originX; x < this.originX + this.sizeX; x++) {
+			for (int y = this.originY; y < this.originY + this.sizeY; y++) {
+				map.setCell(x, y, this.cells[k++]);
+			}
+		}
+	}
+
+}
@@ -1,42 +1,165 @@
 package Agents;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import Grid.Coordinates;
+import Grid.CellSet;
 import Grid.Grid;
+import Grid.GridListener;
+import Grid.Pathfinder;
+import Monitoring.Metrics;
 
+/* Computes the path of the robot. The path is published as an immutable list, replaced
+ * as a whole when a better one is found : the robot can read it at any time.
+ * When the previous path is given, it is repaired instead of being computed again :
+ * the cleaned objectives are removed from it, and the new ones inserted where they lengthen it the least.
+ * When the map has walls, the objectives are sorted by the lengths of the shortest paths around them
+ * (the repair and the improvement of the tour still estimate them by the Manhattan distances).
+ * With many objectives, the path is planned region by region, in parallel (see HierarchicalPlanner).
+ * The computation stops early when its thread is interrupted (the path is not needed anymore)
+ */
 public class PathComputer implements Runnable {
 	
+	// From this number of objectives, the path is planned region by region
+	public static final int DEFAULT_HIERARCHICAL_THRESHOLD = 20000;
+	
 	private Grid grid;
 	private Coordinates robotPosition;
-	private ArrayList<Coordinates> path;
-	private boolean computing;
+	// The objectives given to the robot, null to look for all the objectives of the map
+	private List<Coordinates> objectives;
+	private volatile List<Coordinates> path;
+	private volatile boolean computing;
+	// Time (in milliseconds) given to the improvement of the greedy tour
+	private long optimizationBudget;
+	// The distances to the objectives are divided by dust^dustExponent
+	private double dustExponent;
+	private int hierarchicalThreshold;
+	// Computes the distances around the walls, kept from a path to the next one, null to create one when needed
+	private Pathfinder pathfinder;
+	// The rest of the previous path, and the map it was computed on, null to compute the path from scratch
+	private List<Coordinates> previousTour;
+	private Grid previousGrid;
+	private boolean repaired;
+	private int greedyLength;
+	private int optimizedLength;
 	
 	public PathComputer(Grid grid, Coordinates robotPosition) {
+		this(grid, robotPosition, null);
+	}
+	
+	/**
+	 * @param grid
+	 * @param robotPosition
+	 * @param objectives
+	 * The objectives to visit, in row order, null to visit all the objectives of the map
+	 */
+	public PathComputer(Grid grid, Coordinates robotPosition, List<Coordinates> objectives) {
 		this.grid = grid;
-		this.robotPosition = robotPosition;
-		this.path = new ArrayList<Coordinates>();
+		this.objectives = objectives;
+		// The robot keeps moving while the path is computed
+		this.robotPosition = new Coordinates(robotPosition.x, robotPosition.y);
+		this.path = null;
 		this.computing = true;
+		this.optimizationBudget = 0;
+		this.dustExponent = ObjectiveIndex.DEFAULT_DUST_EXPONENT;
+		this.hierarchicalThreshold = DEFAULT_HIERARCHICAL_THRESHOLD;
 	}
 	
 	/**
-	 * @return path
+	 * @param dustExponent
+	 * The distances to the objectives are divided by dust^dustExponent (0.5 by default),
+	 * 0 to go to the nearest objective whatever its dust level
 	 */
-	public ArrayList<Coordinates> getPath() {
-		return this.path;
+	public void setDustExponent(double dustExponent) {
+		this.dustExponent = dustExponent;
+	}
+	
+	/**
+	 * @param optimizationBudget
+	 * Time (in milliseconds) given to the improvement of the greedy tour, 0 to keep the greedy tour
+	 */
+	public void setOptimizationBudget(long optimizationBudget) {
+		this.optimizationBudget = optimizationBudget;
+	}
+	
+	/**
+	 * @param hierarchicalThreshold
+	 * From this number of objectives, the path is planned region by region, in parallel
+	 * (Integer.MAX_VALUE to always plan it as a whole)
+	 */
+	public void setHierarchicalThreshold(int hierarchicalThreshold) {
+		this.hierarchicalThreshold = hierarchicalThreshold;
+	}
+	
+	/**
+	 * @param pathfinder
+	 * Computes the distances around the walls : the distance fields it keeps are reused by the next paths.
+	 * It must not be the one of a grid whose walls change, such as the map the robot keeps updating (see Pathfinder.withGrid)
+	 */
+	public void setPathfinder(Pathfinder pathfinder) {
+		this.pathfinder = pathfinder;
+	}
+	
+	/** Gives the previous path, to be repaired instead of computing a new one
+	 * @param previousTour
+	 * The objectives of the previous path not reached yet
+	 * @param previousGrid
+	 * The map the previous path was computed on
+	 */
+	public void setPreviousPlan(List<Coordinates> previousTour, Grid previousGrid) {
+		this.previousTour = previousTour;
+		this.previousGrid = previousGrid;
+	}
+	
+	/**
+	 * @return grid
+	 * The map the path is computed on
+	 */
+	Grid getGrid() {
+		return this.grid;
 	}
 	
-	/** Adds a set of coordinates at the end of the path
-	 * @param coordinates
+	/**
+	 * @return repaired
+	 * True if the path is the repaired previous path, false if it has been computed from scratch
 	 */
-	public synchronized void addToPath (Coordinates coordinates) {
-		this.path.add(coordinates);
+	public boolean isRepaired() {
+		return this.repaired;
 	}
 	
-	/** Removes the first element of the path
+	/**
+	 * @return greedyLength
+	 * The length of the tour built by the greedy algorithm
 	 */
-	public synchronized void removeFirstPathElement() {
-		if (this.path.size() > 0) {this.path.remove(0);}
+	public int getGreedyLength() {
+		return this.greedyLength;
+	}
+	
+	/**
+	 * @return savedLength
+	 * How much the improvement of the greedy tour has shortened it
+	 */
+	public int getSavedLength() {
+		return this.greedyLength - this.optimizedLength;
+	}
+	
+	/**
+	 * @return path
+	 * The last path published, null until the first one is computed
+	 */
+	public List<Coordinates> getPath() {
+		return this.path;
+	}
+	
+	/** Publishes a new path, which the robot will follow from its start
+	 * @param tour
+	 */
+	private void publishPath(List<Coordinates> tour) {
+		this.path = Collections.unmodifiableList(new ArrayList<Coordinates>(tour));
 	}
 	
 	/**
@@ -46,69 +169,176 @@ public class PathComputer implements Runnable {
 		return this.computing;
 	}
 	
-	/** Looks for all the objectives (cases with dust/jewel) in the map
+	/** Looks for all the objectives (cases with dust/jewel) in the map,
+	 * using the index maintained by the grid
 	 * @return objectives
 	 */
-	private ArrayList<Coordinates> findObjectives() {
-		ArrayList<Coordinates> objectives = new ArrayList<Coordinates>();
-		int sizeX = this.grid.getSizeX();
-		int sizeY = this.grid.getSizeY();
-		for (int i = 0; i < sizeX; i++) {
-			for (int j = 0; j < sizeY; j++) {
-				if (this.grid.getCase(i, j).getDustLevel() > 0 || this.grid.getCase(i, j).hasJewel()) {
-					objectives.add(new Coordinates(i, j));
-				}
-			}
+	ArrayList<Coordinates> findObjectives() {
+		long[] keys = this.grid.getObjectives();
+		// Sorted in row order, like a scan of the map would find them
+		Arrays.sort(keys);
+		ArrayList<Coordinates> objectives = new ArrayList<Coordinates>(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			objectives.add(new Coordinates(Grid.keyX(keys[i]), Grid.keyY(keys[i])));
 		}
 		return objectives;
 	}
 	
 	/** Sort the objectives, by minimizing the distance between two consecutive ones.
-	 * Although not optimal, this works in n2 instead of n!, is close to optimal in this particular case.
+	 * Although not optimal, this greedy tour is close to optimal in this particular case.
+	 * The nearest objective is found with a spatial index, instead of comparing all the remaining ones
 	 * @param objectives
+	 * @return tour
+	 * The sorted objectives, null if the computation was interrupted
 	 */
-	private void sortObjectives(ArrayList<Coordinates> objectives) {
+	List<Coordinates> sortObjectives(ArrayList<Coordinates> objectives) {
+		List<Coordinates> tour = new ArrayList<Coordinates>(objectives.size());
 		if (this.grid != null && this.robotPosition != null) {
-			int nbObjectives = objectives.size();
-			// The index of the minimum found
-			int minimumIndex = 0;
-			double distanceMin = this.grid.getSizeX() + this.grid.getSizeY();
-			double currentDistance;
+			Pathfinder pathfinder = null;
+			if (this.grid.getWallCount() > 0) {
+				pathfinder = this.pathfinder != null ? this.pathfinder.withGrid(this.grid) : new Pathfinder(this.grid);
+			}
+			ObjectiveIndex index = new ObjectiveIndex(objectives, this.grid, this.dustExponent, pathfinder);
 			Coordinates referenceCoordinates = this.robotPosition;
-			Coordinates coord;
-			double dust;
-			for (int i = 0; i < nbObjectives; i++) {
-				for (int j = 0; j < nbObjectives - i; j++) {
-					coord = objectives.get(j);
-					dust = this.grid.getCase(coord.x, coord.y).getDustLevel();
-					if (dust == 0) dust++;
-					// Divides by sqrt(dust) to force the robot to go to cells with lots of dust
-					currentDistance = (double) referenceCoordinates.distance(coord) / Math.sqrt(dust);
-					if (currentDistance < distanceMin) {
-						minimumIndex = j;
-						distanceMin = currentDistance;
-					}
+			while (!index.isEmpty()) {
+				if ((tour.size() & 0xFF) == 0 && Thread.currentThread().isInterrupted()) {
+					return null;
 				}
-				// Changes the reference coordinates
-				referenceCoordinates = objectives.get(minimumIndex);
-				// Reset the minimum distance
-				distanceMin = this.grid.getSizeX() + this.grid.getSizeY();
+				// The next objective minimizes distance / sqrt(dust) (by default), to force the robot
+				// to go to cells with lots of dust
+				Coordinates nearest = index.removeNearest(referenceCoordinates);
 				// Adds the minimum to the path
-				this.addToPath(objectives.get(minimumIndex));
-				// Removes it from the objectives
-				objectives.remove(minimumIndex);
+				tour.add(nearest);
+				// Changes the reference coordinates
+				referenceCoordinates = nearest;
+			}
+		}
+		return tour;
+	}
+
+	/** Repairs the previous path : the objectives cleaned since it was computed are removed, then the new
+	 * objectives found by comparing the maps are inserted one by one where they lengthen it the least
+	 * (cheapest insertion). The dust level of the objectives is not taken into account
+	 * @return tour
+	 * The repaired path, null if the maps differ too much and the path has to be computed from scratch
+	 */
+	List<Coordinates> repairPath() {
+		if (this.previousGrid.getSizeX() != this.grid.getSizeX() || this.previousGrid.getSizeY() != this.grid.getSizeY()) {
+			return null;
+		}
+		// Only the tiles modified since the previous path are compared
+		final List<Coordinates> added = new ArrayList<Coordinates>();
+		Grid.compare(this.previousGrid, this.grid, new GridListener() {
+			@Override
+			public void cellChanged(int x, int y, int oldCell, int newCell) {
+				if (Grid.isObjective(newCell) && !Grid.isObjective(oldCell)) {
+					added.add(new Coordinates(x, y));
+				}
+			}
+		});
+		ArrayList<Coordinates> tour = new ArrayList<Coordinates>(this.previousTour.size() + added.size());
+		CellSet visited = new CellSet();
+		for (Coordinates c : this.previousTour) {
+			if (Grid.isObjective(this.grid.getCell(c.x, c.y)) && visited.add(Grid.key(c.x, c.y))) {
+				tour.add(c);
+			}
+		}
+		// When most of the objectives are new, the greedy path is better than the repaired one
+		if (added.size() > tour.size()) {
+			return null;
+		}
+		for (int k = 0; k < added.size(); k++) {
+			if ((k & 0xFF) == 0 && Thread.currentThread().isInterrupted()) {
+				return null;
+			}
+			Coordinates c = added.get(k);
+			if (visited.add(Grid.key(c.x, c.y))) {
+				this.insertCheapest(tour, c);
+			}
+		}
+		return tour;
+	}
+
+	/** Inserts an objective in the tour where it lengthens it the least
+	 * @param tour
+	 * @param objective
+	 */
+	private void insertCheapest(ArrayList<Coordinates> tour, Coordinates objective) {
+		// At the end of the tour, the objective only adds the distance from the last one
+		int best = tour.size();
+		int bestCost = (tour.isEmpty() ? this.robotPosition : tour.get(tour.size() - 1)).distance(objective);
+		Coordinates previous = this.robotPosition;
+		for (int k = 0; k < tour.size(); k++) {
+			Coordinates next = tour.get(k);
+			int cost = previous.distance(objective) + objective.distance(next) - previous.distance(next);
+			if (cost < bestCost) {
+				best = k;
+				bestCost = cost;
+			}
+			previous = next;
+		}
+		tour.add(best, objective);
+	}
+
+	/** Improves the greedy tour with 2-opt and Or-opt moves, until the time budget is spent.
+	 * Each improved tour is published as soon as it is found
+	 * @param greedyTour
+	 */
+	private void optimizePath(List<Coordinates> greedyTour) {
+		TourOptimizer optimizer = new TourOptimizer(this.robotPosition, greedyTour);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.optimizationBudget);
+		boolean improved = true;
+		while (improved && System.nanoTime() - deadline < 0 && !Thread.currentThread().isInterrupted()) {
+			int before = optimizer.getLength();
+			improved = optimizer.improve(deadline);
+			if (optimizer.getLength() < before && !Thread.currentThread().isInterrupted()) {
+				this.publishPath(optimizer.getTour());
+				this.optimizedLength = optimizer.getLength();
 			}
 		}
 	}
 
 	@Override
 	public void run() {
-		// Looks for all the objectives (cases with dust/jewel) in the map
-		ArrayList<Coordinates> objectives = this.findObjectives();
-		// Sort them according to their distance to the robot
-		this.sortObjectives(objectives);
+		long start = Metrics.get().startTimer();
+		List<Coordinates> tour = null;
+		// Length of the tour before its regions were improved, -1 if it has not been planned by regions
+		int greedyLength = -1;
+		// Repairs the previous path if there is one
+		if (this.previousTour != null && this.objectives == null) {
+			tour = this.repairPath();
+			this.repaired = tour != null;
+		}
+		if (tour == null) {
+			// Looks for all the objectives (cases with dust/jewel) in the map, unless they were given
+			ArrayList<Coordinates> objectives = this.objectives != null ? new ArrayList<Coordinates>(this.objectives) : this.findObjectives();
+			if (objectives.size() >= this.hierarchicalThreshold) {
+				// Plans the regions in parallel, each of them improved within the time budget
+				HierarchicalPlanner planner = new HierarchicalPlanner(this.grid, this.robotPosition);
+				planner.setDustExponent(this.dustExponent);
+				planner.setOptimizationBudget(this.optimizationBudget);
+				tour = planner.plan(objectives);
+				greedyLength = planner.getGreedyLength();
+			} else {
+				// Sort them according to their distance to the robot
+				tour = this.sortObjectives(objectives);
+			}
+		}
+		if (tour != null) {
+			this.publishPath(tour);
+			this.optimizedLength = TourOptimizer.tourLength(this.robotPosition, tour);
+			this.greedyLength = greedyLength >= 0 ? greedyLength : this.optimizedLength;
+			// Then improves the tour within the time budget, unless its regions have already been improved
+			if (this.optimizationBudget > 0 && greedyLength < 0) {
+				this.optimizePath(tour);
+			}
+		}
 		// Set to false to show the robot it has finished computing
 		this.computing = false;
+		Metrics.get().recordPlan(start);
+		if (tour != null) {
+			Metrics.get().recordTour(this.greedyLength, this.getSavedLength());
+		}
 	}
 	
 }
\ No newline at end of file
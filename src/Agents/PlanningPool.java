@@ -0,0 +1,51 @@
+package Agents;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Monitoring.Metrics;
+
+/* The threads computing the paths of the robots, shared by all of them.
+ * The pool and its queue are bounded : when both are full, the robot computes its path itself
+ */
+public class PlanningPool {
+
+	// Highest number of computations waiting for a thread
+	private static final int QUEUE_CAPACITY = 256;
+
+	private static final ThreadPoolExecutor POOL = createPool();
+
+	/**
+	 * @return pool
+	 */
+	private static ThreadPoolExecutor createPool() {
+		int nbThreads = Runtime.getRuntime().availableProcessors();
+		final AtomicInteger counter = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(nbThreads, nbThreads, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable task) {
+						// The computations never keep the application alive
+						Thread thread = new Thread(task, "path-computer-" + counter.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		pool.allowCoreThreadTimeOut(true);
+		// Its backlog is published with the metrics
+		Metrics.get().setPlanningPool(pool);
+		return pool;
+	}
+
+	/**
+	 * @return pool
+	 * The executor shared by the robots
+	 */
+	public static ThreadPoolExecutor get() {
+		return POOL;
+	}
+
+}
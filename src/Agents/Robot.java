@@ -1,154 +1,420 @@
 package Agents;
 
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
-import Grid.Case;
 import Grid.Coordinates;
 import Grid.Direction;
 import Grid.Grid;
+import Grid.Pathfinder;
+import Monitoring.Metrics;
+import Simulation.Steppable;
 
-public class Robot implements Runnable {
+public class Robot implements Runnable, Steppable {
+
+	// Number of paths repaired one after the other before one is computed from scratch,
+	// the repaired paths getting worse as insertions accumulate
+	private static final int MAX_REPAIRS = 7;
 
 	private Manor environment;
+	private int id;
+	// When part of a fleet, the robot does not observe the environment by itself
+	private boolean coordinated;
 	// ==========================
 	// Internal state information
 	private Grid map;
 	private PathComputer pathComputer;
+	// The computation of the last path, cancelled if a new one is started before its end
+	private FutureTask<Void> planning;
+	// The path followed, and the index of the next objective in it
+	private List<Coordinates> path;
+	private int pathIndex;
+	// Finds the way around the walls of the map, only used by the thread of the robot
+	private Pathfinder pathfinder;
+	// Finds the way around the walls of the maps of the path computers, so that they reuse the distance fields
+	// of the previous ones while the walls stay the same
+	private Pathfinder planningPathfinder;
+	// The map the followed path was computed on
+	private Grid pathGrid;
+	// True to repair the followed path after each observation, instead of computing a new one
+	private boolean incrementalPlanning = true;
+	private int nbRepairs;
 	private Coordinates position;
 	private int maxRefreshRate = 20;
 	private int refreshRate;
+	// Changes of the refresh rate when the performance gets worse, or stays the same
+	private int refreshRateDecrease = 2;
+	private int refreshRateIncrease = 1;
+	// The distances to the objectives are divided by dust^dustExponent
+	private double dustExponent = ObjectiveIndex.DEFAULT_DUST_EXPONENT;
 	private float performance;
+	// Radius of the window sensed around the robot, 0 to observe the whole manor
+	private int sensingRadius = 0;
 	private int nbActions;
+	// Remaining iterations before next internal state update
+	private int beforeUpdate;
 	// ==========================
+	// Time between two actions of the robot
+	private long period = 1000;
+	// Runs the path computations, in the shared pool by default
+	private Executor planner;
+	// Time (in milliseconds) given to the improvement of each path, a quarter of the period unless it has been set
+	private long planningBudget = this.period / 4;
+	private boolean planningBudgetSet = false;
 
 	public Robot(Manor environment) {
+		this(environment, 0);
+	}
+
+	/**
+	 * @param environment
+	 * @param id
+	 * The id of the robot in the environment
+	 */
+	public Robot(Manor environment, int id) {
 		this.environment = environment;
+		this.id = id;
+		this.coordinated = false;
 		// The robot knows the map and its own position once it has scanned at least once the environment
 		this.map = null;
 		this.pathComputer = null;
+		this.planning = null;
+		this.path = null;
+		this.pathIndex = 0;
+		this.pathfinder = null;
+		this.planningPathfinder = null;
+		this.pathGrid = null;
+		this.nbRepairs = 0;
 		this.position = null;
 		// The number of iterations between two use of the robot sensors
 		this.refreshRate = this.maxRefreshRate;
 		this.nbActions = 0;
+		this.beforeUpdate = 1;
+		this.planner = PlanningPool.get();
 	}
 
 	/**
-	 * @param x
-	 * @param y
+	 * @return id
 	 */
-	private void suckUp(int x, int y) {
-		this.environment.suckUp(x, y);
-		// Modifies the internal state of the robot
-		this.map.getCase(x, y).removeDust();
-		this.nbActions++;
+	public int getId() {
+		return this.id;
 	}
 
 	/**
-	 * @param x
-	 * @param y
+	 * @param coordinated
+	 * True if the robot receives its map and objectives from a fleet
 	 */
-	private void pickJewel(int x, int y) {
-		this.environment.pickJewel(x, y);
-		// Modifies the internal state of the robot
-		this.map.getCase(x, y).removeJewel();
-		this.nbActions++;
+	void setCoordinated(boolean coordinated) {
+		this.coordinated = coordinated;
+	}
+
+	/** Changes the way the paths are computed, a direct executor computes them
+	 * in the calling thread (headless simulation)
+	 * @param planner
+	 */
+	public void setPlanner(Executor planner) {
+		this.planner = planner;
+	}
+
+	/**
+	 * @param planningBudget
+	 * Time (in milliseconds) given to the improvement of each path, 0 to follow the greedy path
+	 */
+	public void setPlanningBudget(long planningBudget) {
+		this.planningBudget = planningBudget;
+		this.planningBudgetSet = true;
 	}
 
 	/**
-	 * @param dir
-	 * @return validMove
+	 * @param maxRefreshRate
+	 * Highest number of iterations between two observations of the environment
+	 */
+	public void setMaxRefreshRate(int maxRefreshRate) {
+		this.maxRefreshRate = maxRefreshRate;
+		this.refreshRate = Math.min(this.refreshRate, maxRefreshRate);
+	}
+
+	/** Changes the adaptation of the refresh rate to the performance of the robot
+	 * @param decrease
+	 * Decrease of the refresh rate when the robot loses more points than during the previous cycle
+	 * @param increase
+	 * Increase of the refresh rate when it loses as many points
 	 */
-	private boolean move(Direction dir) {
-		if (this.environment.moveRobot(dir)) {
-			this.map.getCase(this.position.x, this.position.y).setRobot(false);
-			this.position.move(dir);
-			this.map.getCase(this.position.x, this.position.y).setRobot(true);
-			this.nbActions++;
-			return true;
+	public void setRefreshRateSteps(int decrease, int increase) {
+		this.refreshRateDecrease = decrease;
+		this.refreshRateIncrease = increase;
+	}
+
+	/**
+	 * @param dustExponent
+	 * The distances to the objectives are divided by dust^dustExponent (0.5 by default)
+	 */
+	public void setDustExponent(double dustExponent) {
+		this.dustExponent = dustExponent;
+	}
+
+	/** Makes the robot only sense the cases around itself, and remember the rest of the map.
+	 * The cost of an observation then depends on the radius instead of the size of the manor
+	 * @param sensingRadius
+	 * The number of cases sensed in each direction, 0 to observe the whole manor (default)
+	 */
+	public void setSensingRadius(int sensingRadius) {
+		this.sensingRadius = sensingRadius;
+		this.refreshRate = Math.min(this.refreshRate, this.highestRefreshRate());
+	}
+
+	/**
+	 * @param incrementalPlanning
+	 * True to repair the followed path after each observation (default), false to compute a new one
+	 */
+	public void setIncrementalPlanning(boolean incrementalPlanning) {
+		this.incrementalPlanning = incrementalPlanning;
+	}
+
+	/**
+	 * @param period
+	 * Time between two actions of the robot, a quarter of which is given to the improvement
+	 * of each path unless the planning budget has been set
+	 */
+	public void setPeriod(long period) {
+		this.period = period;
+		if (!this.planningBudgetSet) {
+			this.planningBudget = period / 4;
 		}
-		return false;
 	}
 
-	/** Makes the robot follow its current path
+	@Override
+	public long getPeriod() {
+		return this.period;
+	}
+
+	/** Modifies the internal state of the robot once one of its actions has been performed by the environment
+	 * @param action
+	 * @param done
+	 * True if the environment has performed the action, false if it was not valid
+	 */
+	void actionPerformed(Action action, boolean done) {
+		if (!done) {
+			return;
+		}
+		switch (action.getType()) {
+		case SUCK_UP:
+			this.map.removeDust(action.getX(), action.getY());
+			Metrics.get().countSuck();
+			break;
+		case PICK_JEWEL:
+			this.map.removeJewel(action.getX(), action.getY());
+			Metrics.get().countPick();
+			break;
+		case MOVE:
+			this.map.setRobot(this.position.x, this.position.y, -1);
+			this.position.move(action.getDirection());
+			this.map.setRobot(this.position.x, this.position.y, this.id);
+			Metrics.get().countMove();
+			break;
+		}
+		this.nbActions++;
+	}
+
+	/** Follows the last path published by the path computer, if it is not the current one
 	 */
-	private void followPath() {
+	private void takeLatestPath() {
+		List<Coordinates> latestPath = this.pathComputer != null ? this.pathComputer.getPath() : null;
+		if (latestPath != null && latestPath != this.path) {
+			this.path = latestPath;
+			this.pathIndex = 0;
+			this.pathGrid = this.pathComputer.getGrid();
+		}
+	}
+
+	/** Makes the robot follow its current path. The robot keeps following its previous path
+	 * until the path computer has published a new one
+	 * @return move
+	 * The move towards the next objective, null if there is none
+	 */
+	private Action followPath() {
 		// Get the current value of the path from the path computer
-		ArrayList<Coordinates> path = this.pathComputer.getPath();
-		// If there is at least one objective
-		// If there is no objective on the map, the robot doesn't move
-		if (path.size() > 0) {
-			Coordinates nextObjective = path.get(0);
-			int diffX = nextObjective.x - this.position.x;
-			if (diffX < 0) {
-				this.move(Direction.UP);
-			} else if (diffX > 0) {
-				this.move(Direction.DOWN);
-			} else {
-				int diffY = nextObjective.y - this.position.y;
-				if (diffY < 0) {
-					this.move(Direction.LEFT);
-				} else if (diffY > 0) {
-					this.move(Direction.RIGHT);
-				} else {
-					// If the next objective is the current case, removes it, and then calls the
-					// followPath again with the next objective
-					this.pathComputer.removeFirstPathElement();
-					this.followPath();
+		this.takeLatestPath();
+		if (this.path == null) {
+			return null;
+		}
+		// The fields of the path computers are reused while the map has the walls of their snapshots,
+		// else the robot computes its own fields on its map
+		Pathfinder pathfinder = this.planningPathfinder;
+		if (pathfinder == null || !pathfinder.hasWallsOf(this.map)) {
+			pathfinder = this.getPathfinder();
+			pathfinder.setGrid(this.map);
+		}
+		// Skips the objectives already reached, or cleaned according to the robot's copy of the map,
+		// or which cannot be reached because of the walls
+		while (this.pathIndex < this.path.size()) {
+			Coordinates objective = this.path.get(this.pathIndex);
+			if (!objective.equals(this.position) && Grid.isObjective(this.map.getCell(objective.x, objective.y))) {
+				// Along x then y without walls, else along a shortest path around them
+				Direction direction = pathfinder.nextDirection(this.position, objective);
+				if (direction != null) {
+					return Action.move(this.id, direction);
 				}
 			}
+			this.pathIndex++;
+		}
+		// If there is no objective left, the robot doesn't move
+		return null;
+	}
+
+	/**
+	 * @return pathfinder
+	 * The pathfinder of the robot, created on its map the first time
+	 */
+	private Pathfinder getPathfinder() {
+		if (this.pathfinder == null) {
+			this.pathfinder = new Pathfinder(this.map);
+		}
+		return this.pathfinder;
+	}
+
+	/**
+	 * @param snapshot
+	 * The map of a path computer, whose walls no thread modifies
+	 * @return pathfinder
+	 * The pathfinder of the path computers, on the given map : a new one once the walls have changed
+	 */
+	private Pathfinder getPlanningPathfinder(Grid snapshot) {
+		if (this.planningPathfinder == null) {
+			this.planningPathfinder = new Pathfinder(snapshot);
+		} else {
+			this.planningPathfinder = this.planningPathfinder.withGrid(snapshot);
+		}
+		return this.planningPathfinder;
+	}
+
+	/** The robot chooses an action depending on its internal state, without doing it
+	 * @return action
+	 * The next action of the robot, null if it has nothing to do
+	 */
+	Action nextAction() {
+		if (this.map == null || this.position == null) {
+			return null;
+		}
+		int currentCase = this.map.getCell(this.position.x, this.position.y);
+		// If there is a jewel on the current case, according to the robot's copy of the map
+		if (Grid.hasJewel(currentCase)) {
+			return Action.pickJewel(this.position.x, this.position.y);
+		}
+		// If there is dust on the current case, according to the robot's copy of the map
+		else if (Grid.dustLevel(currentCase) > 0) {
+			return Action.suckUp(this.position.x, this.position.y);
+		}
+		// If there is nothing to do on the current case, the robot moves
+		else {
+			return this.followPath();
 		}
 	}
 
 	/** The robot chooses an action depending on its internal state, then does it
 	 */
 	private void chooseAction() {
-		if (this.map != null && this.position != null) {
-			Case currentCase = map.getCase(this.position.x, this.position.y);
-			// If there is a jewel on the current case, according to the robot's copy of the map
-			if (currentCase.hasJewel()) {
-				this.pickJewel(this.position.x, this.position.y);
-			}
-			// If there is dust on the current case, according to the robot's copy of the map
-			else if (currentCase.getDustLevel() > 0) {
-				this.suckUp(this.position.x, this.position.y);
-			}
-			// If there is nothing to do on the current case, the robot moves
-			else {
-				this.followPath();
-			}
+		long start = Metrics.get().startTimer();
+		Action action = this.nextAction();
+		if (action != null) {
+			this.actionPerformed(action, this.environment.perform(action));
 		}
+		Metrics.get().recordChooseAction(start);
 	}
 
-	/** The robot uses its sensors to observe the environment
+	/** The robot uses its sensors to observe the environment : the whole manor,
+	 * or the cases around it, added to what it remembers of the map
 	 */
 	private void observeEnvironment() {
-		this.map = this.environment.getRoomsCopy();
-		this.position = this.environment.getRobotPosition();
+		long start = Metrics.get().startTimer();
+		if (this.sensingRadius > 0) {
+			Observation observation = this.environment.sense(this.id, this.sensingRadius);
+			if (this.map == null) {
+				// Before its first observation, the robot only knows the size of the manor
+				this.map = new Grid(this.environment.getRooms().getSizeX(), this.environment.getRooms().getSizeY());
+			}
+			observation.mergeInto(this.map);
+			this.position = new Coordinates(observation.getPosition().x, observation.getPosition().y);
+		} else {
+			this.map = this.environment.getRoomsCopy();
+			Coordinates robotPosition = this.environment.getRobotPosition(this.id);
+			this.position = new Coordinates(robotPosition.x, robotPosition.y);
+		}
+		Metrics.get().recordObserve(start);
 	}
 
-	/** The robot computes the path it has to follow, in a new thread
+	/** The robot receives its map and objectives from its fleet, then computes its path
+	 * in the calling thread
+	 * @param map
+	 * @param position
+	 * @param objectives
+	 */
+	void assign(Grid map, Coordinates position, List<Coordinates> objectives) {
+		this.map = map;
+		this.position = position;
+		this.pathComputer = new PathComputer(this.map, this.position, objectives);
+		this.pathComputer.setOptimizationBudget(this.planningBudget);
+		this.pathComputer.setDustExponent(this.dustExponent);
+		// The map of the fleet only changes where the robot acts, never its walls
+		this.pathComputer.setPathfinder(this.getPlanningPathfinder(this.map));
+		this.pathComputer.run();
+	}
+
+	/** The robot computes the path it has to follow, through its planner.
+	 * The previous computation is cancelled if it is still running
 	 */
 	private void updateState() {
-		this.pathComputer = new PathComputer(this.map, this.position);
-		// Then the robot computes the path it has to follow, in a new thread
-		(new Thread(this.pathComputer)).start();
+		if (this.planning != null) {
+			this.planning.cancel(true);
+		}
+		// The path followed until now is repaired, rather than computed again
+		this.takeLatestPath();
+		// The path computer works on its own copy of the map, which the robot keeps modifying
+		Grid snapshot = new Grid(this.map);
+		this.pathComputer = new PathComputer(snapshot, this.position);
+		this.pathComputer.setOptimizationBudget(this.planningBudget);
+		this.pathComputer.setDustExponent(this.dustExponent);
+		this.pathComputer.setPathfinder(this.getPlanningPathfinder(snapshot));
+		if (this.incrementalPlanning && this.path != null && this.pathGrid != null && this.nbRepairs < MAX_REPAIRS) {
+			this.pathComputer.setPreviousPlan(this.path.subList(this.pathIndex, this.path.size()), this.pathGrid);
+			this.nbRepairs++;
+		} else {
+			this.nbRepairs = 0;
+		}
+		this.planning = new FutureTask<Void>(this.pathComputer, null);
+		// Then the robot computes the path it has to follow, in the shared pool by default
+		this.planner.execute(this.planning);
 		this.performanceMeasure();
 	}
 
+	/**
+	 * @return highestRefreshRate
+	 * The highest number of iterations between two observations. A robot sensing around itself moves
+	 * at most one case per iteration : it observes again before leaving the sensed window, which is cheap
+	 */
+	private int highestRefreshRate() {
+		if (this.sensingRadius > 0) {
+			return Math.min(this.maxRefreshRate, this.sensingRadius);
+		}
+		return this.maxRefreshRate;
+	}
+
 	/** Computes the performance of the robot over the last iterations
 	 */
 	private void performanceMeasure() {
-		float nextPerf = (float) this.environment.getLostPoints() / ((float) this.nbActions + 1);
+		// The points lost are read and reset at once, none is lost if a jewel is sucked up meanwhile
+		float nextPerf = (float) this.environment.takeLostPoints() / ((float) this.nbActions + 1);
 		//System.out.println("Perf : " + nextPerf);
 		float perfDiff = nextPerf - this.performance;
 		// If the robot has lost more points than during the previous cycle, decreases the refresh rate
-		if (perfDiff > 0 && this.refreshRate - 2 >= 1) {
-			this.refreshRate -= 2;
+		if (perfDiff > 0 && this.refreshRate - this.refreshRateDecrease >= 1) {
+			this.refreshRate -= this.refreshRateDecrease;
 			this.environment.notifyRefreshRateGUI(this.refreshRate);
 			//System.out.println("Decreasing refreshing rate.");
-		} else if (perfDiff == 0 && this.refreshRate < this.maxRefreshRate) {
-			this.refreshRate++;
+		} else if (perfDiff == 0 && this.refreshRate < this.highestRefreshRate()) {
+			this.refreshRate = Math.min(this.refreshRate + this.refreshRateIncrease, this.highestRefreshRate());
 			this.environment.notifyRefreshRateGUI(this.refreshRate);
 			//System.out.println("Increasing refreshing rate.");
 		}
@@ -156,33 +422,35 @@ public class Robot implements Runnable {
 		//System.out.println("Refresh rate : " + this.refreshRate);
 		// Reset the values used to measure performance
 		this.nbActions = 0;
-		this.environment.resetPoints();
 		this.environment.notifyRefreshRateGUI(this.refreshRate);
 	}
 
+	/** One iteration of the robot : observation if needed, then one action
+	 */
+	@Override
+	public void step() {
+		// First, the robot asks the environment for a map, and updates its internal state
+		if (this.beforeUpdate <= 0 && !this.coordinated) {
+			this.observeEnvironment();
+			this.updateState();
+			this.beforeUpdate = this.refreshRate;
+		}
+		// Then, it chooses an action
+		this.chooseAction();
+		this.beforeUpdate--;
+		//System.out.println("Before Update : " + beforeUpdate);
+	}
+
 	@Override
 	public void run() {
-		// Time between two actions of the robot
-		int sleepTime = 1000;
-		// Remaining iterations before next internal state update
-		int beforeUpdate = 1;
 		// The robot runs permanently
 		while (true) {
-			// First, the robot asks the environment for a map, and updates its internal state
-			if (beforeUpdate <= 0) {
-				this.observeEnvironment();
-				this.updateState();
-				beforeUpdate = this.refreshRate;
-			}
-			// Then, it chooses an action
-			this.chooseAction();
+			this.step();
 			try {
-				TimeUnit.MILLISECONDS.sleep(sleepTime);
+				TimeUnit.MILLISECONDS.sleep(this.period);
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 			}
-			beforeUpdate--;
-			//System.out.println("Before Update : " + beforeUpdate);
 		}
 	}
 
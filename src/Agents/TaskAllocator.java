@@ -0,0 +1,140 @@
+package Agents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import Grid.Coordinates;
+import Grid.DensityMap;
+import Grid.Grid;
+
+/* Shares the objectives of the manor between the robots : each objective is given to the
+ * nearest robot, so that each robot only plans its path among its own region.
+ * The robots left without objectives can then be given the dirtiest regions of the manor
+ */
+public class TaskAllocator {
+
+	// Level of the blocks of the density map given to the robots without objectives (32 x 32 cases)
+	private static final int REGION_LEVEL = 1;
+
+	/** Allocates the objectives of the map to the robots, in parallel.
+	 * The objectives of each robot are given in row order
+	 * @param grid
+	 * @param robots
+	 * The positions of the robots, indexed by robot id
+	 * @return tasks
+	 * The objectives of each robot, indexed by robot id
+	 */
+	public static List<List<Coordinates>> allocate(Grid grid, final List<Coordinates> robots) {
+		return allocate(grid, robots, null);
+	}
+
+	/** Allocates the objectives of the map to the robots, in parallel, then gives the objectives
+	 * of the dirtiest regions to the robots left without objectives.
+	 * The objectives of each robot are given in row order
+	 * @param grid
+	 * @param robots
+	 * The positions of the robots, indexed by robot id
+	 * @param densityMap
+	 * Gives the sums of the blocks of the manor, only called if a robot has no objective.
+	 * Null to leave these robots without objectives
+	 * @return tasks
+	 * The objectives of each robot, indexed by robot id
+	 */
+	public static List<List<Coordinates>> allocate(Grid grid, final List<Coordinates> robots, Supplier<DensityMap> densityMap) {
+		final long[] keys = grid.getObjectives();
+		Arrays.parallelSort(keys);
+		final int[] owner = new int[keys.length];
+		IntStream.range(0, keys.length).parallel().forEach(k -> {
+			owner[k] = nearestRobot(Grid.keyX(keys[k]), Grid.keyY(keys[k]), robots);
+		});
+		if (densityMap != null) {
+			giveRegions(keys, owner, robots.size(), densityMap);
+		}
+		List<List<Coordinates>> tasks = new ArrayList<List<Coordinates>>(robots.size());
+		for (int i = 0; i < robots.size(); i++) {
+			tasks.add(new ArrayList<Coordinates>());
+		}
+		for (int k = 0; k < keys.length; k++) {
+			tasks.get(owner[k]).add(new Coordinates(Grid.keyX(keys[k]), Grid.keyY(keys[k])));
+		}
+		return tasks;
+	}
+
+	/** Gives the objectives of the dirtiest regions to the robots without objectives, one region per robot.
+	 * A region is skipped if it holds all the objectives of one of its owners, which would be left without objectives
+	 * @param keys
+	 * @param owner
+	 * The robot of each objective, modified
+	 * @param nbRobots
+	 * @param densityMap
+	 */
+	private static void giveRegions(long[] keys, int[] owner, int nbRobots, Supplier<DensityMap> densityMap) {
+		int[] count = new int[nbRobots];
+		for (int k = 0; k < keys.length; k++) {
+			count[owner[k]]++;
+		}
+		List<Integer> idle = new ArrayList<Integer>();
+		for (int i = 0; i < nbRobots; i++) {
+			if (count[i] == 0) {
+				idle.add(i);
+			}
+		}
+		if (idle.isEmpty() || keys.length == 0) {
+			return;
+		}
+		DensityMap density = densityMap.get();
+		int shift = density.getLevelShift(REGION_LEVEL);
+		// More regions than idle robots, in case some of them cannot be given
+		List<Coordinates> regions = density.getDirtiestRegions(REGION_LEVEL, 2 * idle.size());
+		int nextIdle = 0;
+		for (Coordinates region : regions) {
+			if (nextIdle == idle.size()) {
+				break;
+			}
+			// The objectives of the snapshot in the region, by owner
+			List<Integer> inRegion = new ArrayList<Integer>();
+			int[] taken = new int[nbRobots];
+			boolean allowed = true;
+			for (int k = 0; k < keys.length; k++) {
+				if (Grid.keyX(keys[k]) >> shift == region.x >> shift && Grid.keyY(keys[k]) >> shift == region.y >> shift) {
+					inRegion.add(k);
+					allowed &= ++taken[owner[k]] < count[owner[k]];
+				}
+			}
+			if (!allowed || inRegion.isEmpty()) {
+				continue;
+			}
+			int robot = idle.get(nextIdle++);
+			for (int k : inRegion) {
+				count[owner[k]]--;
+				owner[k] = robot;
+			}
+			count[robot] = inRegion.size();
+		}
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param robots
+	 * @return id
+	 * The id of the robot nearest to the [x,y] case, the lowest id in case of a tie
+	 */
+	private static int nearestRobot(int x, int y, List<Coordinates> robots) {
+		int nearest = 0;
+		int distanceMin = Integer.MAX_VALUE;
+		for (int i = 0; i < robots.size(); i++) {
+			Coordinates c = robots.get(i);
+			int distance = Math.abs(c.x - x) + Math.abs(c.y - y);
+			if (distance < distanceMin) {
+				nearest = i;
+				distanceMin = distance;
+			}
+		}
+		return nearest;
+	}
+
+}
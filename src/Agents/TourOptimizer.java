@@ -0,0 +1,215 @@
+package Agents;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import Grid.Coordinates;
+
+/* Improves a tour of the objectives starting from the robot position, with 2-opt
+ * (reversal of a part of the tour) and Or-opt (move of 1 to 3 consecutive objectives) moves.
+ * The tour is open : it starts at the robot position, which never moves, and does not come back
+ */
+public class TourOptimizer {
+
+	// Longest sequence of objectives moved by Or-opt
+	private static final int MAX_SEGMENT = 3;
+
+	// tour[0] is the robot position
+	private Coordinates[] tour;
+	private int length;
+
+	/**
+	 * @param start
+	 * @param objectives
+	 * The objectives, in the order they are visited
+	 */
+	public TourOptimizer(Coordinates start, List<Coordinates> objectives) {
+		this.tour = new Coordinates[objectives.size() + 1];
+		this.tour[0] = start;
+		for (int i = 0; i < objectives.size(); i++) {
+			this.tour[i + 1] = objectives.get(i);
+		}
+		this.length = tourLength(start, objectives);
+	}
+
+	/** Computes the length of a tour
+	 * @param start
+	 * @param objectives
+	 * @return length
+	 */
+	public static int tourLength(Coordinates start, List<Coordinates> objectives) {
+		int length = 0;
+		Coordinates previous = start;
+		for (Coordinates c : objectives) {
+			length += previous.distance(c);
+			previous = c;
+		}
+		return length;
+	}
+
+	/**
+	 * @return length
+	 * The length of the current tour
+	 */
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * @return objectives
+	 * The objectives, in the order of the current tour
+	 */
+	public List<Coordinates> getTour() {
+		List<Coordinates> objectives = new ArrayList<Coordinates>(this.tour.length - 1);
+		for (int i = 1; i < this.tour.length; i++) {
+			objectives.add(this.tour[i]);
+		}
+		return objectives;
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @return distance
+	 * The distance between the i-th and j-th cases of the tour, 0 if one of them is past its end
+	 */
+	private int d(int i, int j) {
+		if (i >= this.tour.length || j >= this.tour.length) {
+			return 0;
+		}
+		return this.tour[i].distance(this.tour[j]);
+	}
+
+	/**
+	 * @param deadline
+	 * @return expired
+	 * True if the time budget is spent or the computation is interrupted
+	 */
+	private static boolean isExpired(long deadline) {
+		return System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted();
+	}
+
+	/** Improves the tour until no move shortens it anymore, or until the deadline
+	 * @param deadline
+	 * Value of System.nanoTime() after which the optimization stops
+	 * @return improved
+	 * True if the last pass has shortened the tour (a next pass may shorten it again)
+	 */
+	public boolean improve(long deadline) {
+		boolean improved = this.twoOptPass(deadline);
+		improved |= this.orOptPass(deadline);
+		return improved;
+	}
+
+	/** One pass of 2-opt : the part of the tour between two edges is reversed
+	 * when it shortens the tour
+	 * @param deadline
+	 * @return improved
+	 */
+	public boolean twoOptPass(long deadline) {
+		boolean improved = false;
+		int last = this.tour.length - 1;
+		for (int i = 0; i < last - 1; i++) {
+			if (isExpired(deadline)) {
+				return improved;
+			}
+			for (int j = i + 2; j <= last; j++) {
+				// Edges (i, i+1) and (j, j+1) become (i, j) and (i+1, j+1), the last edge may not exist
+				int delta = this.d(i, j) + this.d(i + 1, j + 1) - this.d(i, i + 1) - this.d(j, j + 1);
+				if (delta < 0) {
+					this.reverse(i + 1, j);
+					this.length += delta;
+					improved = true;
+				}
+			}
+		}
+		return improved;
+	}
+
+	/** One pass of Or-opt : a sequence of 1 to MAX_SEGMENT objectives is moved elsewhere in the tour,
+	 * possibly reversed, when it shortens the tour
+	 * @param deadline
+	 * @return improved
+	 */
+	public boolean orOptPass(long deadline) {
+		boolean improved = false;
+		for (int segment = 1; segment <= MAX_SEGMENT; segment++) {
+			for (int i = 1; i + segment - 1 < this.tour.length; i++) {
+				if (isExpired(deadline)) {
+					return improved;
+				}
+				int end = i + segment - 1;
+				// Gain of removing the sequence [i, end] from the tour
+				int removal = this.d(i - 1, i) + this.d(end, end + 1) - this.d(i - 1, end + 1);
+				if (removal <= 0) {
+					continue;
+				}
+				int bestDelta = 0;
+				int bestK = -1;
+				boolean bestReversed = false;
+				for (int k = 0; k < this.tour.length; k++) {
+					// The sequence is inserted between k and k+1, which must not belong to it
+					if (k >= i - 1 && k <= end) {
+						continue;
+					}
+					int edge = this.d(k, k + 1);
+					int straight = this.tour[k].distance(this.tour[i]) + this.d(end, k + 1) - edge;
+					int reversed = this.tour[k].distance(this.tour[end]) + this.d(i, k + 1) - edge;
+					if (straight - removal < bestDelta) {
+						bestDelta = straight - removal;
+						bestK = k;
+						bestReversed = false;
+					}
+					if (reversed - removal < bestDelta) {
+						bestDelta = reversed - removal;
+						bestK = k;
+						bestReversed = true;
+					}
+				}
+				if (bestK >= 0) {
+					this.moveSegment(i, end, bestK, bestReversed);
+					this.length += bestDelta;
+					improved = true;
+				}
+			}
+		}
+		return improved;
+	}
+
+	/** Reverses the part [from, to] of the tour
+	 * @param from
+	 * @param to
+	 */
+	private void reverse(int from, int to) {
+		while (from < to) {
+			Coordinates c = this.tour[from];
+			this.tour[from++] = this.tour[to];
+			this.tour[to--] = c;
+		}
+	}
+
+	/** Moves the sequence [from, to] of the tour after the case k
+	 * @param from
+	 * @param to
+	 * @param k
+	 * @param reversed
+	 * True if the sequence is inserted backwards
+	 */
+	private void moveSegment(int from, int to, int k, boolean reversed) {
+		int segment = to - from + 1;
+		Coordinates[] moved = new Coordinates[segment];
+		for (int s = 0; s < segment; s++) {
+			moved[s] = this.tour[reversed ? to - s : from + s];
+		}
+		if (k < from) {
+			// The cases between k and the sequence are shifted towards the end
+			System.arraycopy(this.tour, k + 1, this.tour, k + 1 + segment, from - k - 1);
+			System.arraycopy(moved, 0, this.tour, k + 1, segment);
+		} else {
+			// The cases between the sequence and k are shifted towards the start
+			System.arraycopy(this.tour, to + 1, this.tour, from, k - to);
+			System.arraycopy(moved, 0, this.tour, k - segment + 1, segment);
+		}
+	}
+
+}
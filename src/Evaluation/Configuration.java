@@ -0,0 +1,77 @@
+package Evaluation;
+
+import Agents.ObjectiveIndex;
+import Agents.Robot;
+
+/* The parameters of the robot policy compared by the evaluator
+ */
+public class Configuration {
+
+	private String name;
+	private int maxRefreshRate;
+	private int refreshRateDecrease;
+	private int refreshRateIncrease;
+	private double dustExponent;
+	private int sensingRadius;
+
+	/** The default policy of the robot
+	 * @param name
+	 */
+	public Configuration(String name) {
+		this(name, 20, 2, 1, ObjectiveIndex.DEFAULT_DUST_EXPONENT);
+	}
+
+	/**
+	 * @param name
+	 * @param maxRefreshRate
+	 * Highest number of iterations between two observations of the environment
+	 * @param refreshRateDecrease
+	 * @param refreshRateIncrease
+	 * Changes of the refresh rate when the performance gets worse, or stays the same
+	 * @param dustExponent
+	 * The distances to the objectives are divided by dust^dustExponent
+	 */
+	public Configuration(String name, int maxRefreshRate, int refreshRateDecrease, int refreshRateIncrease, double dustExponent) {
+		this.name = name;
+		this.maxRefreshRate = maxRefreshRate;
+		this.refreshRateDecrease = refreshRateDecrease;
+		this.refreshRateIncrease = refreshRateIncrease;
+		this.dustExponent = dustExponent;
+		this.sensingRadius = 0;
+	}
+
+	/**
+	 * @param sensingRadius
+	 * The number of cases sensed around the robot, 0 to observe the whole manor
+	 * @return configuration
+	 */
+	public Configuration withSensingRadius(int sensingRadius) {
+		this.sensingRadius = sensingRadius;
+		return this;
+	}
+
+	/**
+	 * @return name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/** Gives the parameters of the configuration to a robot
+	 * @param robot
+	 */
+	public void apply(Robot robot) {
+		robot.setMaxRefreshRate(this.maxRefreshRate);
+		robot.setRefreshRateSteps(this.refreshRateDecrease, this.refreshRateIncrease);
+		robot.setDustExponent(this.dustExponent);
+		robot.setSensingRadius(this.sensingRadius);
+	}
+
+	@Override
+	public String toString() {
+		return this.name + " (max refresh rate " + this.maxRefreshRate + ", steps -" + this.refreshRateDecrease
+				+ "/+" + this.refreshRateIncrease + ", dust exponent " + this.dustExponent
+				+ (this.sensingRadius > 0 ? ", sensing radius " + this.sensingRadius : "") + ")";
+	}
+
+}
@@ -0,0 +1,130 @@
+package Evaluation;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executor;
+
+import Agents.Manor;
+import Agents.Robot;
+import Grid.Grid;
+import Simulation.Simulator;
+
+/* One headless simulation of a manor and its robot, entirely run in the calling thread.
+ * Two episodes with the same seed and configuration give the same result
+ */
+public class Episode {
+
+	// Runs the path computations in the thread of the episode
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable task) {
+			task.run();
+		}
+	};
+
+	private Configuration configuration;
+	private int size;
+	private long duration;
+	private long seed;
+	private long lostJewels;
+	private long dustLeft;
+	private long steps;
+	private long wallTime;
+
+	/**
+	 * @param configuration
+	 * @param size
+	 * The size of the manor
+	 * @param duration
+	 * The simulated duration, in milliseconds
+	 * @param seed
+	 * The seed of the generation of dust and jewels
+	 */
+	public Episode(Configuration configuration, int size, long duration, long seed) {
+		this.configuration = configuration;
+		this.size = size;
+		this.duration = duration;
+		this.seed = seed;
+	}
+
+	/** Runs the simulation
+	 */
+	public void run() {
+		long start = System.nanoTime();
+		Manor manor = new Manor(this.size, this.size, new SplittableRandom(this.seed));
+		Robot robot = new Robot(manor);
+		robot.setPlanner(DIRECT);
+		// The path is not improved within a time budget, which would make the result depend on the machine
+		robot.setPlanningBudget(0);
+		this.configuration.apply(robot);
+		manor.setRobotPosition(this.size / 2, this.size / 2);
+		Simulator simulator = new Simulator();
+		simulator.schedule(manor, 0);
+		simulator.schedule(robot, 0);
+		try {
+			simulator.runUntil(this.duration);
+		} catch (InterruptedException e) {
+			// Not paced, the simulator never waits : the episode ends where it was interrupted
+			Thread.currentThread().interrupt();
+		}
+		this.steps = simulator.getSteps();
+		this.lostJewels = manor.getLostJewels();
+		Grid rooms = manor.getRooms();
+		this.dustLeft = 0;
+		for (long key : rooms.getObjectives()) {
+			this.dustLeft += rooms.getDustLevel(Grid.keyX(key), Grid.keyY(key));
+		}
+		this.wallTime = System.nanoTime() - start;
+	}
+
+	/**
+	 * @return configuration
+	 */
+	public Configuration getConfiguration() {
+		return this.configuration;
+	}
+
+	/**
+	 * @return seed
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * @return score
+	 * The points lost by sucking up jewels (10 per jewel), plus the dust left at the end. Lower is better
+	 */
+	public long getScore() {
+		return 10 * this.lostJewels + this.dustLeft;
+	}
+
+	/**
+	 * @return lostJewels
+	 */
+	public long getLostJewels() {
+		return this.lostJewels;
+	}
+
+	/**
+	 * @return dustLeft
+	 */
+	public long getDustLeft() {
+		return this.dustLeft;
+	}
+
+	/**
+	 * @return steps
+	 * The number of steps simulated
+	 */
+	public long getSteps() {
+		return this.steps;
+	}
+
+	/**
+	 * @return wallTime
+	 * The time taken by the simulation, in nanoseconds
+	 */
+	public long getWallTime() {
+		return this.wallTime;
+	}
+
+}
@@ -0,0 +1,118 @@
+package Evaluation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/* Runs many independent episodes of each configuration in parallel, on all the cores.
+ * The i-th episode of every configuration gets the same seed : the configurations are compared
+ * on the same evolutions of the manor, and the results do not depend on the scheduling
+ */
+public class Evaluator {
+
+	private int size;
+	private long duration;
+	private int nbEpisodes;
+	private long seed;
+	private ForkJoinPool pool;
+
+	/**
+	 * @param size
+	 * The size of the manors
+	 * @param duration
+	 * The simulated duration of each episode, in milliseconds
+	 * @param nbEpisodes
+	 * The number of episodes of each configuration
+	 * @param seed
+	 * The seed from which the seeds of the episodes are drawn
+	 */
+	public Evaluator(int size, long duration, int nbEpisodes, long seed) {
+		this.size = size;
+		this.duration = duration;
+		this.nbEpisodes = nbEpisodes;
+		this.seed = seed;
+		this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	/** Runs the episodes of all the configurations
+	 * @param configurations
+	 * @return summaries
+	 * The results of each configuration, in the same order
+	 */
+	public List<Summary> evaluate(List<Configuration> configurations) {
+		// One independent stream per episode, split in a fixed order
+		SplittableRandom master = new SplittableRandom(this.seed);
+		long[] seeds = new long[this.nbEpisodes];
+		for (int i = 0; i < this.nbEpisodes; i++) {
+			seeds[i] = master.split().nextLong();
+		}
+		Episode[] episodes = new Episode[configurations.size() * this.nbEpisodes];
+		for (int c = 0; c < configurations.size(); c++) {
+			for (int i = 0; i < this.nbEpisodes; i++) {
+				episodes[c * this.nbEpisodes + i] = new Episode(configurations.get(c), this.size, this.duration, seeds[i]);
+			}
+		}
+		this.pool.invoke(new EpisodeTask(episodes, 0, episodes.length));
+		List<Summary> summaries = new ArrayList<Summary>(configurations.size());
+		for (int c = 0; c < configurations.size(); c++) {
+			Episode[] results = new Episode[this.nbEpisodes];
+			System.arraycopy(episodes, c * this.nbEpisodes, results, 0, this.nbEpisodes);
+			summaries.add(new Summary(configurations.get(c), results));
+		}
+		return summaries;
+	}
+
+	/** Stops the threads of the evaluator
+	 */
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+
+	/**
+	 * @param summaries
+	 * @return table
+	 * The results of the configurations, one per line, best score first
+	 */
+	public static String toTable(List<Summary> summaries) {
+		List<Summary> sorted = new ArrayList<Summary>(summaries);
+		sorted.sort((a, b) -> Double.compare(a.getMeanScore(), b.getMeanScore()));
+		StringBuilder table = new StringBuilder();
+		table.append(String.format("%-24s %8s %18s %12s %12s %14s%n", "configuration", "episodes", "score", "lost jewels", "dust left", "steps/s/core"));
+		for (Summary s : sorted) {
+			table.append(String.format("%-24s %8d %10.1f +- %-5.1f %12.2f %12.2f %14.0f%n", s.getConfiguration().getName(),
+					s.getEpisodeCount(), s.getMeanScore(), s.getScoreError(), s.getMeanLostJewels(), s.getMeanDustLeft(),
+					s.getStepsPerSecond()));
+		}
+		return table.toString();
+	}
+
+	/* Runs a range of episodes, split in halves until a single episode remains
+	 */
+	private static class EpisodeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private Episode[] episodes;
+		private int from;
+		private int to;
+
+		EpisodeTask(Episode[] episodes, int from, int to) {
+			this.episodes = episodes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from == 1) {
+				this.episodes[this.from].run();
+			} else if (this.to > this.from) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new EpisodeTask(this.episodes, this.from, middle), new EpisodeTask(this.episodes, middle, this.to));
+			}
+		}
+
+	}
+
+}
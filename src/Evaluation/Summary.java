@@ -0,0 +1,95 @@
+package Evaluation;
+
+/* The results of the episodes of one configuration
+ */
+public class Summary {
+
+	private Configuration configuration;
+	private int nbEpisodes;
+	private double meanScore;
+	private double scoreError;
+	private double meanLostJewels;
+	private double meanDustLeft;
+	private long steps;
+	private long wallTime;
+
+	/**
+	 * @param configuration
+	 * @param episodes
+	 * The episodes of the configuration, all run
+	 */
+	public Summary(Configuration configuration, Episode[] episodes) {
+		this.configuration = configuration;
+		this.nbEpisodes = episodes.length;
+		double sum = 0;
+		double squares = 0;
+		for (Episode e : episodes) {
+			sum += e.getScore();
+			squares += (double) e.getScore() * e.getScore();
+			this.meanLostJewels += e.getLostJewels();
+			this.meanDustLeft += e.getDustLeft();
+			this.steps += e.getSteps();
+			this.wallTime += e.getWallTime();
+		}
+		int n = Math.max(this.nbEpisodes, 1);
+		this.meanScore = sum / n;
+		this.meanLostJewels /= n;
+		this.meanDustLeft /= n;
+		// Standard error of the mean score
+		double variance = this.nbEpisodes > 1 ? (squares - sum * sum / n) / (n - 1) : 0;
+		this.scoreError = Math.sqrt(Math.max(variance, 0) / n);
+	}
+
+	/**
+	 * @return configuration
+	 */
+	public Configuration getConfiguration() {
+		return this.configuration;
+	}
+
+	/**
+	 * @return meanScore
+	 * Lower is better
+	 */
+	public double getMeanScore() {
+		return this.meanScore;
+	}
+
+	/**
+	 * @return scoreError
+	 * The standard error of the mean score
+	 */
+	public double getScoreError() {
+		return this.scoreError;
+	}
+
+	/**
+	 * @return meanLostJewels
+	 */
+	public double getMeanLostJewels() {
+		return this.meanLostJewels;
+	}
+
+	/**
+	 * @return meanDustLeft
+	 */
+	public double getMeanDustLeft() {
+		return this.meanDustLeft;
+	}
+
+	/**
+	 * @return stepsPerSecond
+	 * The number of steps simulated per second by one thread
+	 */
+	public double getStepsPerSecond() {
+		return this.wallTime == 0 ? 0 : this.steps * 1e9 / this.wallTime;
+	}
+
+	/**
+	 * @return nbEpisodes
+	 */
+	public int getEpisodeCount() {
+		return this.nbEpisodes;
+	}
+
+}
@@ -0,0 +1,44 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import Evaluation.Configuration;
+import Evaluation.Evaluator;
+import Evaluation.Summary;
+import Monitoring.Metrics;
+
+public class EvaluationLauncher {
+
+	public static void main(String[] args) {
+		// Number of episodes per configuration, size of the manors, simulated duration (in days) and seed
+		int nbEpisodes = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		long days = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+		// The parameters are changed one at a time from the default policy
+		List<Configuration> configurations = new ArrayList<Configuration>();
+		configurations.add(new Configuration("default"));
+		for (int maxRefreshRate : new int[] {5, 10, 40}) {
+			configurations.add(new Configuration("maxRefreshRate=" + maxRefreshRate, maxRefreshRate, 2, 1, 0.5));
+		}
+		configurations.add(new Configuration("steps=-1/+1", 20, 1, 1, 0.5));
+		configurations.add(new Configuration("steps=-4/+2", 20, 4, 2, 0.5));
+		for (double dustExponent : new double[] {0, 0.25, 1}) {
+			configurations.add(new Configuration("dustExponent=" + dustExponent, 20, 2, 1, dustExponent));
+		}
+		for (int sensingRadius : new int[] {3, 8}) {
+			configurations.add(new Configuration("sensingRadius=" + sensingRadius).withSensingRadius(sensingRadius));
+		}
+		// The episodes run on all the cores, the shared metrics would only slow them down
+		Metrics.get().setEnabled(false);
+		Evaluator evaluator = new Evaluator(size, days * 24 * 3600 * 1000, nbEpisodes, seed);
+		long start = System.nanoTime();
+		List<Summary> summaries = evaluator.evaluate(configurations);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		evaluator.shutdown();
+		System.out.print(Evaluator.toTable(summaries));
+		long nbRuns = (long) nbEpisodes * configurations.size();
+		System.out.println(nbRuns + " episodes in " + seconds + " s (" + (long) (nbRuns / seconds) + " episodes per second, "
+				+ Runtime.getRuntime().availableProcessors() + " cores)");
+	}
+
+}
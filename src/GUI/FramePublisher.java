@@ -0,0 +1,78 @@
+package GUI;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.Timer;
+
+import Monitoring.Metrics;
+
+/* Coalesces the modifications notified by the simulation threads into frames : a modification only
+ * marks the frame dirty, and at most maxFps times per second the Event Dispatch Thread draws
+ * the last state, the intermediate states being dropped. The simulation threads never wait for the drawing
+ */
+public class FramePublisher {
+
+	/** Default highest number of frames drawn per second */
+	public static final int DEFAULT_MAX_FPS = 30;
+
+	private AtomicBoolean dirty;
+	private Runnable drawing;
+	private Timer timer;
+
+	/**
+	 * @param drawing
+	 * Draws a frame, called by the Event Dispatch Thread
+	 */
+	public FramePublisher(Runnable drawing) {
+		this.dirty = new AtomicBoolean(true);
+		this.drawing = drawing;
+		this.timer = new Timer(1000 / DEFAULT_MAX_FPS, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				publish();
+			}
+		});
+		this.timer.setCoalesce(true);
+	}
+
+	/**
+	 * @param maxFps
+	 * Highest number of frames drawn per second
+	 */
+	public void setMaxFps(int maxFps) {
+		this.timer.setDelay(1000 / Math.max(maxFps, 1));
+	}
+
+	/** Starts publishing the frames
+	 */
+	public void start() {
+		this.timer.start();
+	}
+
+	/** Stops publishing the frames
+	 */
+	public void stop() {
+		this.timer.stop();
+	}
+
+	/** Marks the frame dirty, it will be drawn at the next tick. Can be called by any thread, and never blocks
+	 */
+	public void markDirty() {
+		// Reading first avoids writing the shared flag again and again between two frames
+		if (!this.dirty.get()) {
+			this.dirty.set(true);
+		}
+	}
+
+	/** Draws a frame if something changed since the previous one, timing the drawing (see Metrics.getRenderLatency)
+	 */
+	private void publish() {
+		if (this.dirty.getAndSet(false)) {
+			long start = Metrics.get().startTimer();
+			this.drawing.run();
+			Metrics.get().recordRender(start);
+		}
+	}
+
+}
@@ -0,0 +1,644 @@
+package GUI;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.imageio.ImageIO;
+import javax.swing.JComponent;
+
+import Grid.CaseReader;
+import Grid.DensityMap;
+import Grid.Grid;
+import Grid.GridListener;
+
+/* Draws the visible part of the map in an image the size of the canvas. The view is zoomed with the mouse wheel
+ * (by powers of 2) and panned by dragging it. Zoomed in, only the visible cases are drawn, and only the ones
+ * modified since the last frame are redrawn. Zoomed out (less than a pixel per case), the blocks of the map
+ * are drawn instead, from their sums kept up to date by the DensityMap of the grid : a heatmap of the dust,
+ * with a mark growing with the number of jewels
+ */
+public class GridCanvas extends JComponent implements GridListener {
+
+	// Under this size (in pixels), the cases are drawn as colored squares instead of icons
+	private static final int MIN_ICON_SIZE = 12;
+	// Under this size (in pixels), the dust level is not written
+	private static final int MIN_TEXT_SIZE = 28;
+	// Under this size (in pixels), the cases are written directly in the pixels of the image, without borders
+	private static final int MIN_DRAWN_SIZE = 4;
+	// Highest zoom : 2^MAX_ZOOM pixels per case
+	private static final int MAX_ZOOM = 7;
+	// Mean dust level per case of the darkest blocks of the heatmap
+	private static final double HEATMAP_MAX_DUST = 2.0;
+	private static final Font FONT = new Font("Georgia", Font.BOLD, 14);
+	private static final Color DUST_COLOR = new Color(150, 110, 60);
+	private static final Color JEWEL_COLOR = new Color(230, 190, 30);
+	private static final Color JEWEL_DUST_COLOR = new Color(200, 140, 40);
+	private static final Color WALL_COLOR = new Color(60, 60, 60);
+	// Number of buffers of modified cases, each one covering the tiles with the same index modulo NB_DIRTY_BUFFERS
+	// (like the locks of Manor) : the threads modifying different tiles record them in different buffers
+	private static final int NB_DIRTY_BUFFERS = 64;
+
+	private int gridSizeX;
+	private int gridSizeY;
+	// Reads the cases drawn zoomed in, given by the last update
+	private CaseReader cases;
+	// The visible cases read for the last frame drawn zoomed in, in row order
+	private int[] visibleCells;
+	private DensityMap density;
+	private BufferedImage image;
+	private int[] pixels;
+	// The view : 2^zoom pixels per case, the top left corner of the canvas showing the case [originX, originY]
+	// (the rows of the map are drawn from top to bottom). The whole map is shown until the view is moved
+	private int zoom;
+	private double originX;
+	private double originY;
+	private boolean moved;
+	// The visible cases, read by the modifying threads to ignore the other ones, empty when zoomed out
+	private volatile int visibleX0;
+	private volatile int visibleY0;
+	private volatile int visibleX1;
+	private volatile int visibleY1;
+	// Icons decoded once, then scaled once for the current size of the cases
+	private BufferedImage dustIcon;
+	private BufferedImage jewelIcon;
+	private BufferedImage jewelDustIcon;
+	private Image scaledDust;
+	private Image scaledJewel;
+	private Image scaledJewelDust;
+	private int scaledSize;
+	// Geometry of the tiles of the map, choosing the buffer of a modified case
+	private int tileShift;
+	private int tilesY;
+	// The keys of the visible cases modified since the last frame, each buffer protected by its own lock :
+	// the modifying threads never wait for a frame to be drawn
+	private DirtyCases[] dirty;
+	private long[] drawing;
+	private AtomicBoolean fullRedraw;
+	// Sums of the blocks drawn when zoomed out, reused from a frame to the next
+	private long[] blockDust;
+	private int[] blockJewels;
+	private int[] blockRobots;
+	private int[] blockWalls;
+
+	private static final long serialVersionUID = 1L;
+
+	/** The keys of the modified cases of some tiles, protected by the lock of the buffer */
+	private static class DirtyCases {
+		private long[] keys = new long[16];
+		private int size = 0;
+	}
+
+	/**
+	 * @param grid
+	 * The map, which the simulation threads modify. It must not be modified while the canvas is created
+	 */
+	public GridCanvas(Grid grid) {
+		this.gridSizeX = grid.getSizeX();
+		this.gridSizeY = grid.getSizeY();
+		this.dustIcon = loadIcon("/icons/dust.png");
+		this.jewelIcon = loadIcon("/icons/jewel.png");
+		this.jewelDustIcon = loadIcon("/icons/jewel_dust.png");
+		this.tileShift = grid.getTileShift();
+		this.tilesY = grid.getTilesY();
+		this.dirty = new DirtyCases[NB_DIRTY_BUFFERS];
+		for (int b = 0; b < NB_DIRTY_BUFFERS; b++) {
+			this.dirty[b] = new DirtyCases();
+		}
+		this.drawing = new long[64];
+		this.visibleCells = new int[0];
+		this.fullRedraw = new AtomicBoolean(true);
+		this.moved = false;
+		this.blockDust = new long[0];
+		this.setOpaque(true);
+		this.density = grid.getDensityMap();
+		grid.addListener(this);
+		this.addNavigation();
+	}
+
+	/**
+	 * @param iconPath
+	 * @return icon
+	 */
+	private BufferedImage loadIcon(String iconPath) {
+		try {
+			return ImageIO.read(getClass().getResource(iconPath));
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println(" # Unable to load the icon " + iconPath);
+			return null;
+		}
+	}
+
+	/** The mouse wheel zooms around the pointer, dragging the view pans it
+	 */
+	private void addNavigation() {
+		MouseAdapter navigation = new MouseAdapter() {
+			private Point last;
+
+			@Override
+			public void mousePressed(MouseEvent e) {
+				this.last = e.getPoint();
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				if (this.last != null) {
+					pan(e.getY() - this.last.y, e.getX() - this.last.x);
+					this.last = e.getPoint();
+				}
+			}
+
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				zoom(-e.getWheelRotation(), e.getY(), e.getX());
+			}
+		};
+		this.addMouseListener(navigation);
+		this.addMouseMotionListener(navigation);
+		this.addMouseWheelListener(navigation);
+	}
+
+	/**
+	 * @return zoom
+	 * The view shows 2^zoom pixels per case
+	 */
+	public synchronized int getZoom() {
+		return this.zoom;
+	}
+
+	/**
+	 * @return minZoom
+	 * The zoom at which the whole map fits in a few pixels
+	 */
+	private int getMinZoom() {
+		return -this.density.getLevelShift(this.density.getLevelCount() - 1);
+	}
+
+	/** Zooms the view, keeping the case under the given pixel in place
+	 * @param steps
+	 * Positive to zoom in, each step doubling the size of the cases
+	 * @param top
+	 * @param left
+	 * The pixel of the canvas kept in place
+	 */
+	public synchronized void zoom(int steps, int top, int left) {
+		int newZoom = Math.max(this.getMinZoom(), Math.min(MAX_ZOOM, this.zoom + steps));
+		if (newZoom == this.zoom) {
+			return;
+		}
+		double caseX = this.originX + top / this.getScale();
+		double caseY = this.originY + left / this.getScale();
+		this.zoom = newZoom;
+		this.originX = caseX - top / this.getScale();
+		this.originY = caseY - left / this.getScale();
+		this.redrawView();
+	}
+
+	/** Moves the view
+	 * @param dTop
+	 * @param dLeft
+	 * The move of the map, in pixels
+	 */
+	public synchronized void pan(int dTop, int dLeft) {
+		this.originX -= dTop / this.getScale();
+		this.originY -= dLeft / this.getScale();
+		this.redrawView();
+	}
+
+	/** Centers the view on a case
+	 * @param x
+	 * @param y
+	 * @param zoom
+	 * The view shows 2^zoom pixels per case
+	 */
+	public synchronized void centerOn(int x, int y, int zoom) {
+		this.zoom = Math.max(this.getMinZoom(), Math.min(MAX_ZOOM, zoom));
+		this.originX = x + 0.5 - this.getHeight() / 2 / this.getScale();
+		this.originY = y + 0.5 - this.getWidth() / 2 / this.getScale();
+		this.redrawView();
+	}
+
+	/**
+	 * @return scale
+	 * The number of pixels per case
+	 */
+	private double getScale() {
+		return Math.scalb(1.0, this.zoom);
+	}
+
+	/** Shows the whole map, with the largest zoom it fits in
+	 */
+	private void fit() {
+		double scale = Math.min((double) this.getWidth() / this.gridSizeY, (double) this.getHeight() / this.gridSizeX);
+		int fitZoom;
+		if (scale >= 1) {
+			fitZoom = 31 - Integer.numberOfLeadingZeros((int) scale);
+		} else {
+			fitZoom = -(32 - Integer.numberOfLeadingZeros((int) Math.ceil(1 / scale) - 1));
+		}
+		this.zoom = Math.max(this.getMinZoom(), Math.min(MAX_ZOOM, fitZoom));
+		this.originX = 0;
+		this.originY = 0;
+	}
+
+	/** Draws the whole view again, after it has moved
+	 */
+	private void redrawView() {
+		this.moved = true;
+		this.redraw();
+	}
+
+	/** Draws the whole view again, from the cases read now. The next frame draws it again,
+	 * with the cases modified in between which have become visible
+	 */
+	private void redraw() {
+		if (this.cases != null) {
+			this.draw(0, true);
+		}
+		this.fullRedraw.set(true);
+	}
+
+	/** Records a modified case, to be redrawn in the next frame if it is visible
+	 */
+	@Override
+	public void cellChanged(int x, int y, int oldCell, int newCell) {
+		// Zoomed out, nothing is recorded : the whole view is drawn again at each frame
+		if (x < this.visibleX0 || x > this.visibleX1 || y < this.visibleY0 || y > this.visibleY1) {
+			return;
+		}
+		if (this.fullRedraw.get()) {
+			return;
+		}
+		DirtyCases buffer = this.dirty[((x >> this.tileShift) * this.tilesY + (y >> this.tileShift)) & (NB_DIRTY_BUFFERS - 1)];
+		synchronized (buffer) {
+			// If too many cases changed, the whole view is redrawn
+			if (buffer.size == buffer.keys.length) {
+				long visible = ((long) this.visibleX1 - this.visibleX0 + 1) * (this.visibleY1 - this.visibleY0 + 1);
+				if (buffer.size >= visible / 4 / NB_DIRTY_BUFFERS) {
+					this.fullRedraw.set(true);
+					return;
+				}
+				buffer.keys = Arrays.copyOf(buffer.keys, buffer.size * 2);
+			}
+			buffer.keys[buffer.size++] = Grid.key(x, y);
+		}
+	}
+
+	/** Draws the cases modified since the last frame, then repaints the canvas.
+	 * Zoomed in, the visible cases are read after the modified cases have been collected : the cases modified
+	 * in between are drawn as they are read, and again in the next frame. Zoomed out, no case is read
+	 * @param cases
+	 * Reads the map, for instance the grid itself if no thread modifies it, or the manor (see Manor.readCases)
+	 */
+	public synchronized void update(CaseReader cases) {
+		// Takes the modified cases, each buffer being locked just the time to copy it
+		boolean full = this.fullRedraw.getAndSet(false);
+		int nbDrawn = 0;
+		for (DirtyCases buffer : this.dirty) {
+			synchronized (buffer) {
+				if (!full) {
+					if (nbDrawn + buffer.size > this.drawing.length) {
+						this.drawing = Arrays.copyOf(this.drawing, Math.max(2 * this.drawing.length, nbDrawn + buffer.size));
+					}
+					System.arraycopy(buffer.keys, 0, this.drawing, nbDrawn, buffer.size);
+					nbDrawn += buffer.size;
+				}
+				buffer.size = 0;
+			}
+		}
+		this.cases = cases;
+		this.draw(nbDrawn, full);
+	}
+
+	/** Draws the view in the image, then repaints the canvas.
+	 * The image is rebuilt, and the whole view drawn, if the size of the canvas has changed
+	 * @param nbDrawn
+	 * The number of cases to draw, taken from the drawing buffer
+	 * @param full
+	 * True to draw the whole view
+	 */
+	private void draw(int nbDrawn, boolean full) {
+		if (this.image == null || this.isResized()) {
+			this.image = new BufferedImage(Math.max(this.getWidth(), 1), Math.max(this.getHeight(), 1), BufferedImage.TYPE_INT_RGB);
+			this.pixels = ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
+			if (!this.moved) {
+				this.fit();
+			}
+			full = true;
+		}
+		if (this.zoom < 0) {
+			this.setVisible(0, -1, 0, -1);
+			this.drawBlocks();
+		} else {
+			int caseSize = 1 << this.zoom;
+			int x0 = Math.max((int) Math.floor(this.originX), 0);
+			int y0 = Math.max((int) Math.floor(this.originY), 0);
+			int x1 = Math.min((int) Math.floor(this.originX + (double) this.image.getHeight() / caseSize), this.gridSizeX - 1);
+			int y1 = Math.min((int) Math.floor(this.originY + (double) this.image.getWidth() / caseSize), this.gridSizeY - 1);
+			int width = y1 - y0 + 1;
+			// Only the visible cases are read, if some of them are drawn
+			if (x0 <= x1 && y0 <= y1 && (full || nbDrawn > 0)) {
+				if (this.visibleCells.length < (x1 - x0 + 1) * width) {
+					this.visibleCells = new int[(x1 - x0 + 1) * width];
+				}
+				this.cases.readCases(x0, y0, x1, y1, this.visibleCells);
+			}
+			Graphics2D g = this.image.createGraphics();
+			g.setFont(FONT);
+			if (full) {
+				this.setVisible(x0, x1, y0, y1);
+				this.scaleIcons(caseSize);
+				Arrays.fill(this.pixels, Color.darkGray.getRGB());
+				for (int i = x0; i <= x1; i++) {
+					for (int j = y0; j <= y1; j++) {
+						this.drawCase(g, i, j, this.visibleCells[(i - x0) * width + (j - y0)]);
+					}
+				}
+			} else {
+				for (int k = 0; k < nbDrawn; k++) {
+					int i = Grid.keyX(this.drawing[k]);
+					int j = Grid.keyY(this.drawing[k]);
+					if (i >= x0 && i <= x1 && j >= y0 && j <= y1) {
+						this.drawCase(g, i, j, this.visibleCells[(i - x0) * width + (j - y0)]);
+					}
+				}
+			}
+			g.dispose();
+		}
+		this.repaint();
+	}
+
+	/** Changes the cases whose modifications are recorded
+	 * @param x0
+	 * @param x1
+	 * @param y0
+	 * @param y1
+	 * The visible cases, none if x1 < x0
+	 */
+	private void setVisible(int x0, int x1, int y0, int y1) {
+		this.visibleX0 = x0;
+		this.visibleX1 = x1;
+		this.visibleY0 = y0;
+		this.visibleY1 = y1;
+	}
+
+	/**
+	 * @return resized
+	 * True if the size of the canvas does not match the size of the image anymore
+	 */
+	private boolean isResized() {
+		return Math.max(this.getWidth(), 1) != this.image.getWidth() || Math.max(this.getHeight(), 1) != this.image.getHeight();
+	}
+
+	/** Scales the icons to the size of the cases, if it has changed
+	 * @param caseSize
+	 */
+	private void scaleIcons(int caseSize) {
+		if (caseSize == this.scaledSize) {
+			return;
+		}
+		this.scaledSize = caseSize;
+		int size = caseSize * 2 / 3;
+		if (size >= MIN_ICON_SIZE) {
+			this.scaledDust = this.scaleIcon(this.dustIcon, size, caseSize);
+			this.scaledJewel = this.scaleIcon(this.jewelIcon, size, caseSize);
+			this.scaledJewelDust = this.scaleIcon(this.jewelDustIcon, size, caseSize);
+		} else {
+			this.scaledDust = null;
+			this.scaledJewel = null;
+			this.scaledJewelDust = null;
+		}
+	}
+
+	/** Scales an icon to the given height, keeping its proportions
+	 * @param icon
+	 * @param size
+	 * @param caseSize
+	 * @return scaledIcon
+	 */
+	private Image scaleIcon(BufferedImage icon, int size, int caseSize) {
+		if (icon == null) {
+			return null;
+		}
+		int width = Math.min(icon.getWidth() * size / icon.getHeight(), caseSize);
+		BufferedImage scaled = new BufferedImage(width, size, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = scaled.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(icon, 0, 0, width, size, null);
+		g.dispose();
+		return scaled;
+	}
+
+	/**
+	 * @param c
+	 * The packed case
+	 * @return color
+	 * The color of the case when no icon is drawn
+	 */
+	private static Color caseColor(int c) {
+		if (Grid.isWall(c)) {
+			return WALL_COLOR;
+		} else if (Grid.isRobot(c)) {
+			return Color.blue;
+		} else if (Grid.hasJewel(c) && Grid.dustLevel(c) > 0) {
+			return JEWEL_DUST_COLOR;
+		} else if (Grid.dustLevel(c) > 0) {
+			return DUST_COLOR;
+		} else if (Grid.hasJewel(c)) {
+			return JEWEL_COLOR;
+		}
+		return Color.lightGray;
+	}
+
+	/** Draws the [x,y] case in the image, at the current zoom (at least one pixel per case)
+	 * @param g
+	 * @param x
+	 * @param y
+	 * @param c
+	 * The packed case
+	 */
+	private void drawCase(Graphics2D g, int x, int y, int c) {
+		int caseSize = 1 << this.zoom;
+		int left = (int) Math.floor((y - this.originY) * caseSize);
+		int top = (int) Math.floor((x - this.originX) * caseSize);
+		if (caseSize < MIN_DRAWN_SIZE) {
+			this.fillPixels(top, left, caseSize, caseSize, caseColor(c).getRGB());
+			return;
+		}
+		if (Grid.isWall(c)) {
+			g.setColor(WALL_COLOR);
+			g.fillRect(left, top, caseSize, caseSize);
+			return;
+		}
+		int dust = Grid.dustLevel(c);
+		boolean jewel = Grid.hasJewel(c);
+		boolean robot = Grid.isRobot(c);
+		Image icon = null;
+		if (jewel && dust > 0) {
+			icon = this.scaledJewelDust;
+		} else if (dust > 0) {
+			icon = this.scaledDust;
+		} else if (jewel) {
+			icon = this.scaledJewel;
+		}
+		// When the icons are drawn, the background is only used to show the robot
+		Color color = caseColor(c);
+		if (icon != null && !robot) {
+			color = Color.lightGray;
+		}
+		g.setColor(color);
+		g.fillRect(left, top, caseSize, caseSize);
+		if (icon != null) {
+			int iconWidth = icon.getWidth(null);
+			int iconHeight = icon.getHeight(null);
+			int textWidth = dust > 0 && caseSize >= MIN_TEXT_SIZE ? g.getFontMetrics().stringWidth("x " + dust) : 0;
+			int iconLeft = left + (caseSize - iconWidth - textWidth) / 2;
+			int iconTop = top + (caseSize - iconHeight) / 2;
+			g.drawImage(icon, iconLeft, iconTop, null);
+			if (textWidth > 0) {
+				g.setColor(robot ? Color.white : Color.black);
+				g.drawString("x " + dust, iconLeft + iconWidth, top + (caseSize + g.getFontMetrics().getAscent()) / 2);
+			}
+		}
+		// Borders between the cases
+		g.setColor(Color.black);
+		g.drawRect(left, top, caseSize - 1, caseSize - 1);
+	}
+
+	/** Fills a rectangle of pixels of the image, clipped to the image
+	 * @param top
+	 * @param left
+	 * @param height
+	 * @param width
+	 * @param rgb
+	 */
+	private void fillPixels(int top, int left, int height, int width, int rgb) {
+		int imageWidth = this.image.getWidth();
+		int x0 = Math.max(top, 0);
+		int x1 = Math.min(top + height, this.image.getHeight());
+		int y0 = Math.max(left, 0);
+		int y1 = Math.min(left + width, imageWidth);
+		if (y0 >= y1) {
+			return;
+		}
+		for (int i = x0; i < x1; i++) {
+			Arrays.fill(this.pixels, i * imageWidth + y0, i * imageWidth + y1, rgb);
+		}
+	}
+
+	/** Draws the visible blocks of the map, zoomed out : the level of the blocks is chosen
+	 * so that each block is at least one pixel wide
+	 */
+	private void drawBlocks() {
+		Arrays.fill(this.pixels, Color.darkGray.getRGB());
+		int level = Math.min(Math.max(-this.zoom - DensityMap.BLOCK_SHIFT, 0), this.density.getLevelCount() - 1);
+		int shift = this.density.getLevelShift(level);
+		double scale = this.getScale();
+		int bx0 = Math.max((int) Math.floor(this.originX) >> shift, 0);
+		int by0 = Math.max((int) Math.floor(this.originY) >> shift, 0);
+		int bx1 = Math.min((int) Math.floor(this.originX + this.image.getHeight() / scale) >> shift, this.density.getBlocksX(level) - 1);
+		int by1 = Math.min((int) Math.floor(this.originY + this.image.getWidth() / scale) >> shift, this.density.getBlocksY(level) - 1);
+		if (bx0 > bx1 || by0 > by1) {
+			return;
+		}
+		int nbX = bx1 - bx0 + 1;
+		int nbY = by1 - by0 + 1;
+		if (this.blockDust.length < nbX * nbY) {
+			this.blockDust = new long[nbX * nbY];
+			this.blockJewels = new int[nbX * nbY];
+			this.blockRobots = new int[nbX * nbY];
+			this.blockWalls = new int[nbX * nbY];
+		}
+		// The sums of all the blocks are copied first, then drawn without holding the locks of the sums
+		this.density.copyBlocks(level, bx0, by0, nbX, nbY, this.blockDust, this.blockJewels, this.blockRobots, this.blockWalls);
+		int jewelRGB = JEWEL_COLOR.getRGB();
+		// The columns of pixels of the blocks are the same for all the rows of blocks
+		int[] lefts = new int[nbY + 1];
+		for (int j = 0; j <= nbY; j++) {
+			lefts[j] = (int) Math.floor((((by0 + j) << shift) - this.originY) * scale);
+		}
+		for (int i = 0; i < nbX; i++) {
+			int x = (bx0 + i) << shift;
+			int top = (int) Math.floor((x - this.originX) * scale);
+			int bottom = (int) Math.floor((x + (1 << shift) - this.originX) * scale);
+			for (int j = 0; j < nbY; j++) {
+				int y = (by0 + j) << shift;
+				int left = lefts[j];
+				int right = lefts[j + 1];
+				int b = i * nbY + j;
+				// The blocks on the borders of the map may be smaller
+				int area = Math.min(1 << shift, this.gridSizeX - x) * Math.min(1 << shift, this.gridSizeY - y);
+				int floor = Math.max(area - this.blockWalls[b], 1);
+				this.fillPixels(top, left, bottom - top, right - left, blockColor(this.blockDust[b], this.blockRobots[b], this.blockWalls[b], area, floor));
+				// The jewels are shown by a mark in the middle of the block, growing with their number
+				if (this.blockJewels[b] > 0) {
+					int mark = Math.max(1, (int) ((right - left) * Math.sqrt((double) this.blockJewels[b] / floor)));
+					this.fillPixels(top + (bottom - top - mark) / 2, left + (right - left - mark) / 2, mark, mark, jewelRGB);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param dust
+	 * @param robots
+	 * @param walls
+	 * @param area
+	 * The number of cases of the block
+	 * @param floor
+	 * The number of cases which are not walls
+	 * @return rgb
+	 * The color of the block : blue if a robot is in it, else from light gray to the dust color
+	 * with its mean dust level, darkened by its walls
+	 */
+	private static int blockColor(long dust, int robots, int walls, int area, int floor) {
+		if (robots > 0) {
+			return Color.blue.getRGB();
+		} else if (dust == 0 && walls == 0) {
+			return Color.lightGray.getRGB();
+		}
+		// The sums read while a case changes may be off by this case, even below 0
+		double heat = Math.min(Math.max(dust / (floor * HEATMAP_MAX_DUST), 0.0), 1.0);
+		int rgb = mix(Color.lightGray.getRGB(), DUST_COLOR.getRGB(), heat);
+		return mix(rgb, WALL_COLOR.getRGB(), Math.min(Math.max((double) walls / area, 0.0), 1.0));
+	}
+
+	/**
+	 * @param rgb1
+	 * @param rgb2
+	 * @param t
+	 * @return rgb
+	 * The color between rgb1 (t = 0) and rgb2 (t = 1)
+	 */
+	private static int mix(int rgb1, int rgb2, double t) {
+		int rgb = 0;
+		for (int shift = 0; shift <= 16; shift += 8) {
+			int c1 = (rgb1 >> shift) & 0xFF;
+			int c2 = (rgb2 >> shift) & 0xFF;
+			rgb |= ((int) (c1 + (c2 - c1) * t) & 0xFF) << shift;
+		}
+		return rgb;
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		synchronized (this) {
+			// The size of the canvas changed, the image has to be rebuilt
+			if (this.image != null && this.isResized()) {
+				this.redraw();
+			}
+			if (this.image != null) {
+				g.drawImage(this.image, 0, 0, null);
+			} else {
+				g.setColor(Color.darkGray);
+				g.fillRect(0, 0, this.getWidth(), this.getHeight());
+			}
+		}
+	}
+
+}
@@ -1,26 +1,41 @@
 package GUI;
 import java.awt.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.*;
 import javax.swing.border.Border;
 
-import Grid.Case;
+import Grid.CaseReader;
 import Grid.Grid;
 
+/* The window showing the manor. It can be updated by any thread : the updates are only recorded,
+ * and drawn in frames by the Event Dispatch Thread (see FramePublisher), reading the visible cases of the map
+ */
 public class GridFrame extends JFrame{
 
-	private int gridSizeX;
-	private int gridSizeY;
 	private BorderLayout borderLayout;
-	private JPanel jpanelEnvironment;
+	private GridCanvas canvasEnvironment;
 	private JPanel jpanelRobot;
 	private JLabel refreshLabel;
 	private JLabel jewelLabel;
-	private int lostJewels;
+	// Written by the simulation threads, shown at the next frame
+	private volatile int refreshRate;
+	private AtomicInteger lostJewels;
+	// False while the robot info is unknown, as for a viewer before the simulation sends it
+	private volatile boolean robotInfoShown;
+	// Reads the cases of the map while the threads modify it
+	private CaseReader cases;
+	private FramePublisher publisher;
 
 	private static final long serialVersionUID = 1L;
 
-	public GridFrame(Grid grid) {
+	/**
+	 * @param grid
+	 * The map, which the simulation threads modify
+	 * @param cases
+	 * Reads the visible cases of the map for the Event Dispatch Thread, without stopping the simulation threads
+	 */
+	public GridFrame(Grid grid, CaseReader cases) {
 		// Set the text in the menu bar
 		this.setTitle("Manor");
 		// Set the dimensions of the frame
@@ -34,60 +49,47 @@ public class GridFrame extends JFrame{
 		this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		this.borderLayout = new BorderLayout();
 		this.setLayout(this.borderLayout);
-		this.gridSizeX = grid.getSizeX();
-		this.gridSizeY = grid.getSizeY();
+		this.cases = cases;
 		// Environment
-		this.jpanelEnvironment = new JPanel();
-		this.add(this.jpanelEnvironment, BorderLayout.CENTER);
+		this.canvasEnvironment = new GridCanvas(grid);
+		this.add(this.canvasEnvironment, BorderLayout.CENTER);
 		// Robot
 		this.buildRobotInfo();
-		// Draws the map
-		this.update(grid);
+		// Draws the map, then the next frames
+		this.publisher = new FramePublisher(new Runnable() {
+			@Override
+			public void run() {
+				drawFrame();
+			}
+		});
+		this.publisher.start();
 		// Sets the frame to visible
 		this.setVisible(true);
 	}
 
 	/**
-	 * @param c
-	 * @return l
+	 * @return publisher
 	 */
-	private JLabel buildCase(Case c) {
-		
-		JLabel l = new JLabel("", JLabel.CENTER);
-		String labelText = "<html>";
-		int dust = c.getDustLevel();
-		if (c.hasJewel() && dust > 0) {
-			this.addIcon(l, "/icons/jewel_dust.png");
-			labelText += "x " + dust;
-		} else if (dust > 0) {
-			this.addIcon(l, "/icons/dust.png");
-			labelText += "x " + dust;
-		} else if (c.hasJewel()) {
-			this.addIcon(l, "/icons/jewel.png");
-		}
-		labelText += "</html>";
-		l.setText(labelText);
-		l.setFont(new Font("Georgia", Font.BOLD, 14));
-		Border border = BorderFactory.createLineBorder(Color.black, 1);
-		l.setBorder(border);
-		l.setOpaque(true);
-		if (c.isRobot()) {l.setBackground(Color.blue);l.setForeground(Color.white);}
-		return l;
+	public FramePublisher getPublisher() {
+		return this.publisher;
 	}
-	
+
 	/** Builds the robot info panel
 	 */
 	private void buildRobotInfo() {
-		this.lostJewels = 0;
+		this.refreshRate = 20;
+		this.lostJewels = new AtomicInteger();
+		this.robotInfoShown = true;
 		this.jpanelRobot = new JPanel();
 		this.add(this.jpanelRobot, BorderLayout.NORTH);
 		GridLayout gridLayoutRobot = new GridLayout(1, 2);
 		this.jpanelRobot.setLayout(gridLayoutRobot);
-		this.refreshLabel = new JLabel("<html>Refresh rate : " +  20 + "</html>", JLabel.CENTER);
+		this.refreshLabel = new JLabel("", JLabel.CENTER);
 		this.formatLabel(this.refreshLabel);
-		this.jewelLabel = new JLabel("<html>&nbsp;&nbsp;Lost jewels : " + this.lostJewels + "</html>", JLabel.CENTER);
+		this.jewelLabel = new JLabel("", JLabel.CENTER);
 		this.formatLabel(this.jewelLabel);
 		this.addIcon(this.jewelLabel, "/icons/jewel.png");
+		this.updateLabels();
 		this.jpanelRobot.add(refreshLabel);
 		this.jpanelRobot.add(jewelLabel);
 	}
@@ -109,38 +111,73 @@ public class GridFrame extends JFrame{
 		label.setIcon(icon);
 	}
 	
-	/** Draws/updates the robot info
+	/** Writes the robot info in the labels
+	 * @return changed
+	 * True if the text of a label has changed
+	 */
+	private boolean updateLabels() {
+		String refreshText = "<html>Refresh rate : " + this.refreshRate + "</html>";
+		// The text is moved away from the icon of the jewel
+		String jewelText = "<html>&nbsp;&nbsp;Lost jewels : " + this.lostJewels.get() + "</html>";
+		if (refreshText.equals(this.refreshLabel.getText()) && jewelText.equals(this.jewelLabel.getText())) {
+			return false;
+		}
+		this.refreshLabel.setText(refreshText);
+		this.jewelLabel.setText(jewelText);
+		return true;
+	}
+
+	/** Updates the robot info, shown at the next frame
 	 * @param refreshRate
 	 */
 	public void updateRefreshRate(int refreshRate) {
-		this.refreshLabel.setText("<html>Refresh rate : " + refreshRate + "</html>");
-		// Refreshes the frame
-		this.jpanelRobot.validate();
+		this.refreshRate = refreshRate;
+		this.publisher.markDirty();
 	}
 
-	/** Draws/updates the robot info
+	/** Counts a lost jewel, shown at the next frame
 	 */
 	public void updateLostJewels() {
-		this.lostJewels++;
-		this.jewelLabel.setText("<html>Lost jewels : " + this.lostJewels + "</html>");
-		// Refreshes the frame
-		this.jpanelRobot.validate();
+		this.lostJewels.incrementAndGet();
+		this.publisher.markDirty();
 	}
 
-	/** Draws/updates the map corresponding to the input grid in the frame
-	 * @param grid
+	/** Sets the number of lost jewels counted elsewhere, shown at the next frame
+	 * @param lostJewels
 	 */
-	public void update(Grid grid) {
-		this.jpanelEnvironment.removeAll();
-		GridLayout gridLayoutEnvironment = new GridLayout(this.gridSizeX, this.gridSizeY);
-		this.jpanelEnvironment.setLayout(gridLayoutEnvironment);
-		for (int i = 0; i < this.gridSizeX; i++) {
-			for (int j = 0; j < this.gridSizeY; j++) {
-				this.jpanelEnvironment.add(buildCase(grid.getCase(i, j)));
-			}
+	public void setLostJewels(int lostJewels) {
+		this.lostJewels.set(lostJewels);
+		this.publisher.markDirty();
+	}
+
+	/** Shows or hides the robot info at the next frame
+	 * @param shown
+	 */
+	public void setRobotInfoShown(boolean shown) {
+		this.robotInfoShown = shown;
+		this.publisher.markDirty();
+	}
+
+	/** Records that the map has been modified : it is drawn at the next frame,
+	 * only the cases modified since the previous frame being redrawn
+	 */
+	public void update() {
+		this.publisher.markDirty();
+	}
+
+	/** Draws a frame : the robot info, and the map. Called by the Event Dispatch Thread
+	 */
+	private void drawFrame() {
+		if (this.jpanelRobot.isVisible() != this.robotInfoShown) {
+			this.jpanelRobot.setVisible(this.robotInfoShown);
+			this.updateLabels();
+			// The map takes the place of the robot info, or gives it back
+			this.validate();
+		} else if (this.updateLabels()) {
+			// Refreshes the frame
+			this.jpanelRobot.validate();
 		}
-		// Refreshes the frame
-		this.jpanelEnvironment.validate();
+		this.canvasEnvironment.update(this.cases);
 	}
 
 }
\ No newline at end of file
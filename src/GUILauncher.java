@@ -1,6 +1,9 @@
 import Agents.Manor;
 import Agents.Robot;
 import GUI.GridFrame;
+import Monitoring.Metrics;
+import Simulation.RealTimePacer;
+import Simulation.Simulator;
 
 public class GUILauncher {
 
@@ -11,14 +14,16 @@ public class GUILauncher {
 		Robot robot = new Robot(manor);
 		manor.setRobotPosition(2, 2);
 		// Creates the GUI, pass it to the environment
-		GridFrame gui = new GridFrame(manor.getRooms());
+		GridFrame gui = new GridFrame(manor.getRooms(), manor);
 		manor.setGui(gui);
-		// Launches the environment in a new thread
-		Thread envThread = new Thread(manor);
-		envThread.start();
-		// Launches the robot in a new thread
-		Thread robotThread = new Thread(robot);
-		robotThread.start();
+		// The metrics can be followed with any JMX console (jconsole, VisualVM)
+		Metrics.get().setRooms(manor.getRooms());
+		Metrics.get().register();
+		// The environment and the robot are driven by the simulator, paced on the wall clock
+		Simulator simulator = new Simulator(new RealTimePacer());
+		simulator.schedule(manor, 0);
+		simulator.schedule(robot, 0);
+		simulator.run();
 	}
 
-}
\ No newline at end of file
+}
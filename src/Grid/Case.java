@@ -1,18 +1,17 @@
 package Grid;
-/* A case which can contain dust, jewels, and/or a robot
+/* A case which can contain dust, jewels, and/or a robot.
+ * This is a view on one packed case of a grid
  */
 public class Case {
 	
-	private int dustLevel;
-	private boolean jewel;
-	private boolean robot;
+	private Grid grid;
+	private int x;
+	private int y;
 	
-	/** Default constructor
+	/** Default constructor, creates an empty case detached from any grid
 	 */
 	public Case() {
-		this.dustLevel = 0;
-		this.jewel = false;
-		this.robot = false;
+		this(new Grid(1, 1), 0, 0);
 	}
 	
 	/**
@@ -21,50 +20,59 @@ public class Case {
 	 * @param robot
 	 */
 	public Case(int dustLevel, boolean jewel, boolean robot) {
-		this.dustLevel = dustLevel;
-		this.jewel = jewel;
-		this.robot = robot;
+		this();
+		for (int i = 0; i < dustLevel; i++) {
+			this.addDust();
+		}
+		if (jewel) {this.addJewel();}
+		this.setRobot(robot);
 	}
 	
-	/** Copy constructor, used to create an independent path for the robot
+	/** Copy constructor, the copy is detached from the grid of the original case
 	 * @param c
 	 */
 	public Case(Case c) {
-		this.dustLevel = c.dustLevel;
-		this.jewel = c.jewel;
-		this.robot = c.robot;
+		this();
+		this.grid.setCell(0, 0, c.grid.getCell(c.x, c.y));
+	}
+	
+	/** View on the [x,y] case of a grid
+	 * @param grid
+	 * @param x
+	 * @param y
+	 */
+	Case(Grid grid, int x, int y) {
+		this.grid = grid;
+		this.x = x;
+		this.y = y;
 	}
 	
 	/**
 	 * @return dustLevel
 	 */
 	public int getDustLevel() {
-		return this.dustLevel;
+		return this.grid.getDustLevel(this.x, this.y);
 	}
 	
 	/** Adds some dust (1 level) to the case
 	 * @return dustLevel
 	 */
 	public int addDust() {
-		return ++this.dustLevel;
+		return this.grid.addDust(this.x, this.y);
 	}
 	
 	/** Decreases the dust level of a case by 1, if possible
 	 * @return dustLevel
 	 */
 	public int removeDust() {
-		if (this.dustLevel >= 1) {
-			return --this.dustLevel;
-		} else {
-			return 0;
-		}
+		return this.grid.removeDust(this.x, this.y);
 	}
 	
 	/**
 	 * @return jewel
 	 */
 	public boolean hasJewel() {
-		return this.jewel;
+		return this.grid.hasJewel(this.x, this.y);
 	}
 	
 	/** Adds a jewel to the case
@@ -72,9 +80,7 @@ public class Case {
 	 * True if a jewel has been added, else false
 	 */
 	public boolean addJewel() {
-		boolean jewelAdded = this.jewel;
-		this.jewel = true;
-		return jewelAdded;
+		return this.grid.addJewel(this.x, this.y);
 	}
 	
 	/** Removes the jewel from a case
@@ -82,29 +88,27 @@ public class Case {
 	 * True if a jewel has been removed, else false
 	 */
 	public boolean removeJewel() {
-		boolean jewelRemoved = this.jewel;
-		this.jewel = false;
-		return jewelRemoved;
+		return this.grid.removeJewel(this.x, this.y);
 	}
 	
 	/**
 	 * @return robot
 	 */
 	public boolean isRobot() {
-		return this.robot;
+		return this.grid.isRobot(this.x, this.y);
 	}
 	
 	/**
 	 * @param robot
 	 */
 	public void setRobot(boolean robot) {
-		this.robot = robot;
+		this.grid.setRobot(this.x, this.y, robot);
 	}
 	
 	/** Overwriting of the toString method, debug use
 	 */
 	public String toString() {
-		return "DL : " + this.dustLevel + " ; J : " + this.jewel + " ; R : " + this.robot;
+		return "DL : " + this.getDustLevel() + " ; J : " + this.hasJewel() + " ; R : " + this.isRobot();
 	}
 	
-}
\ No newline at end of file
+}
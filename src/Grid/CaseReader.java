@@ -0,0 +1,18 @@
+package Grid;
+
+/* Gives the packed cases of a rectangle of a grid, which may be modified by other threads :
+ * the cases of each tile are read at once, but the tiles are not all read at the same time
+ */
+public interface CaseReader {
+
+	/** Copies the packed cases of the rectangle [x0..x1] x [y0..y1], which must be inside the grid
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @param cells
+	 * Receives the cases in row order : [x,y] at (x - x0) * (y1 - y0 + 1) + (y - y0)
+	 */
+	void readCases(int x0, int y0, int x1, int y1, int[] cells);
+
+}
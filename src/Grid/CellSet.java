@@ -0,0 +1,151 @@
+package Grid;
+import java.util.Arrays;
+
+/* Set of cases, identified by their key (see Grid.key), stored in an open addressing hash table
+ */
+public class CellSet {
+
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private int size;
+	private int mask;
+
+	public CellSet() {
+		this.keys = new long[16];
+		Arrays.fill(this.keys, EMPTY);
+		this.size = 0;
+		this.mask = this.keys.length - 1;
+	}
+
+	/** Copy constructor
+	 * @param set
+	 */
+	public CellSet(CellSet set) {
+		this.keys = set.keys.clone();
+		this.size = set.size;
+		this.mask = set.mask;
+	}
+
+	/**
+	 * @return size
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @param key
+	 * @return slot
+	 * The first slot to look at for the key
+	 */
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & this.mask;
+	}
+
+	/**
+	 * @param key
+	 * @return contained
+	 */
+	public boolean contains(long key) {
+		int i = this.slot(key);
+		while (this.keys[i] != EMPTY) {
+			if (this.keys[i] == key) {
+				return true;
+			}
+			i = (i + 1) & this.mask;
+		}
+		return false;
+	}
+
+	/**
+	 * @param key
+	 * @return added
+	 * True if the key was not already in the set, else false
+	 */
+	public boolean add(long key) {
+		int i = this.slot(key);
+		while (this.keys[i] != EMPTY) {
+			if (this.keys[i] == key) {
+				return false;
+			}
+			i = (i + 1) & this.mask;
+		}
+		this.keys[i] = key;
+		this.size++;
+		// The table is kept at most half full
+		if (this.size * 2 > this.keys.length) {
+			this.resize(this.keys.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * @param key
+	 * @return removed
+	 * True if the key was in the set, else false
+	 */
+	public boolean remove(long key) {
+		int i = this.slot(key);
+		while (this.keys[i] != key) {
+			if (this.keys[i] == EMPTY) {
+				return false;
+			}
+			i = (i + 1) & this.mask;
+		}
+		// The following keys of the cluster are shifted back, so that no lookup stops too early
+		int hole = i;
+		int j = (i + 1) & this.mask;
+		while (this.keys[j] != EMPTY) {
+			int home = this.slot(this.keys[j]);
+			if (((j - home) & this.mask) >= ((j - hole) & this.mask)) {
+				this.keys[hole] = this.keys[j];
+				hole = j;
+			}
+			j = (j + 1) & this.mask;
+		}
+		this.keys[hole] = EMPTY;
+		this.size--;
+		// The table shrinks when it is mostly empty
+		if (this.keys.length > 16 && this.size * 8 < this.keys.length) {
+			this.resize(this.keys.length / 2);
+		}
+		return true;
+	}
+
+	/**
+	 * @param capacity
+	 */
+	private void resize(int capacity) {
+		long[] oldKeys = this.keys;
+		this.keys = new long[capacity];
+		Arrays.fill(this.keys, EMPTY);
+		this.mask = capacity - 1;
+		for (int k = 0; k < oldKeys.length; k++) {
+			if (oldKeys[k] != EMPTY) {
+				int i = this.slot(oldKeys[k]);
+				while (this.keys[i] != EMPTY) {
+					i = (i + 1) & this.mask;
+				}
+				this.keys[i] = oldKeys[k];
+			}
+		}
+	}
+
+	/**
+	 * @return keys
+	 * The keys of the set, in no particular order
+	 */
+	public long[] toArray() {
+		long[] result = new long[this.size];
+		int n = 0;
+		for (int k = 0; k < this.keys.length; k++) {
+			if (this.keys[k] != EMPTY) {
+				result[n++] = this.keys[k];
+			}
+		}
+		return result;
+	}
+
+}
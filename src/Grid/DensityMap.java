@@ -0,0 +1,505 @@
+package Grid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/* Sums of the dust, jewels, robots and walls of the square blocks of 2^BLOCK_SHIFT x 2^BLOCK_SHIFT cases of a grid,
+ * kept in 2D Fenwick trees over the blocks as the cases change, in O(log(blocksX) * log(blocksY)) per change.
+ * Any rectangle of blocks is summed in O(log(blocksX) * log(blocksY)), and an aligned square of 2^l x 2^l blocks
+ * (a block of level l, drawn by the zoomed out view) in a few reads on average. Any rectangle of cases is summed
+ * from the blocks it covers entirely, plus the cases of the blocks cut by its edges (less than 2^BLOCK_SHIFT
+ * per case of its perimeter).
+ * It takes about 20 bytes per block, whatever the number of non empty cases.
+ * The rows of the trees are split in stripes, each with its own lock : the threads modifying
+ * distant cases rarely wait for each other, nor for the threads reading the sums
+ */
+public class DensityMap implements GridListener {
+
+	/** The blocks contain 2^BLOCK_SHIFT x 2^BLOCK_SHIFT cases */
+	public static final int BLOCK_SHIFT = 4;
+	// The row i of the trees is modified and read while holding the lock i modulo STRIPES
+	private static final int STRIPES = 64;
+
+	private Grid grid;
+	private int blocksX;
+	private int blocksY;
+	private int nbLevels;
+	// Fenwick trees, indexed from 1 : node [i,j] is at (i * (blocksY + 1)) + j
+	private long[] dust;
+	private int[] jewels;
+	private int[] robots;
+	private int[] walls;
+	private Object[] locks;
+
+	/** Sums the current cases of the grid, then follows its modifications.
+	 * The grid must not be modified while the sums are created (see Grid.getDensityMap)
+	 * @param grid
+	 */
+	DensityMap(Grid grid) {
+		this.grid = grid;
+		this.blocksX = ((grid.getSizeX() - 1) >> BLOCK_SHIFT) + 1;
+		this.blocksY = ((grid.getSizeY() - 1) >> BLOCK_SHIFT) + 1;
+		this.nbLevels = 1;
+		while (((this.blocksX - 1) >> (this.nbLevels - 1)) > 0 || ((this.blocksY - 1) >> (this.nbLevels - 1)) > 0) {
+			this.nbLevels++;
+		}
+		int nbNodes = (this.blocksX + 1) * (this.blocksY + 1);
+		this.dust = new long[nbNodes];
+		this.jewels = new int[nbNodes];
+		this.robots = new int[nbNodes];
+		this.walls = new int[nbNodes];
+		this.locks = new Object[STRIPES];
+		for (int s = 0; s < STRIPES; s++) {
+			this.locks[s] = new Object();
+		}
+		// The sums of each block, from the non empty tiles only
+		int shift = grid.getTileShift();
+		int mask = (1 << shift) - 1;
+		for (int tx = 0; tx < grid.getTilesX(); tx++) {
+			for (int ty = 0; ty < grid.getTilesY(); ty++) {
+				if (grid.isEmptyTile(tx, ty)) {
+					continue;
+				}
+				int[] tile = grid.getTile(tx, ty);
+				for (int i = 0; i < tile.length; i++) {
+					if (tile[i] != 0) {
+						int x = (tx << shift) + (i >> shift);
+						int y = (ty << shift) + (i & mask);
+						this.add(this.node((x >> BLOCK_SHIFT) + 1, (y >> BLOCK_SHIFT) + 1), 0, tile[i]);
+					}
+				}
+			}
+		}
+		// Each node then receives the sums of the nodes it covers, along the columns then along the rows
+		for (int i = 1; i <= this.blocksX; i++) {
+			for (int j = 1; j <= this.blocksY; j++) {
+				int parent = j + (j & -j);
+				if (parent <= this.blocksY) {
+					this.addNode(this.node(i, parent), this.node(i, j));
+				}
+			}
+		}
+		for (int i = 1; i <= this.blocksX; i++) {
+			int parent = i + (i & -i);
+			if (parent <= this.blocksX) {
+				for (int j = 1; j <= this.blocksY; j++) {
+					this.addNode(this.node(parent, j), this.node(i, j));
+				}
+			}
+		}
+		grid.addListener(this);
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @return node
+	 */
+	private int node(int i, int j) {
+		return i * (this.blocksY + 1) + j;
+	}
+
+	/** Adds the difference between two cases to a node
+	 * @param node
+	 * @param oldCell
+	 * @param newCell
+	 */
+	private void add(int node, int oldCell, int newCell) {
+		this.dust[node] += Grid.dustLevel(newCell) - Grid.dustLevel(oldCell);
+		this.jewels[node] += (Grid.hasJewel(newCell) ? 1 : 0) - (Grid.hasJewel(oldCell) ? 1 : 0);
+		this.robots[node] += (Grid.isRobot(newCell) ? 1 : 0) - (Grid.isRobot(oldCell) ? 1 : 0);
+		this.walls[node] += (Grid.isWall(newCell) ? 1 : 0) - (Grid.isWall(oldCell) ? 1 : 0);
+	}
+
+	/**
+	 * @param to
+	 * @param from
+	 */
+	private void addNode(int to, int from) {
+		this.dust[to] += this.dust[from];
+		this.jewels[to] += this.jewels[from];
+		this.robots[to] += this.robots[from];
+		this.walls[to] += this.walls[from];
+	}
+
+	@Override
+	public void cellChanged(int x, int y, int oldCell, int newCell) {
+		int changed = (oldCell ^ newCell) & (Grid.DUST_MASK | Grid.JEWEL_BIT | Grid.WALL_BIT);
+		if (changed == 0 && Grid.isRobot(oldCell) == Grid.isRobot(newCell)) {
+			return;
+		}
+		int bj = (y >> BLOCK_SHIFT) + 1;
+		for (int i = (x >> BLOCK_SHIFT) + 1; i <= this.blocksX; i += i & -i) {
+			synchronized (this.locks[i & (STRIPES - 1)]) {
+				for (int j = bj; j <= this.blocksY; j += j & -j) {
+					this.add(this.node(i, j), oldCell, newCell);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return blocksX
+	 */
+	public int getBlocksX() {
+		return this.blocksX;
+	}
+
+	/**
+	 * @return blocksY
+	 */
+	public int getBlocksY() {
+		return this.blocksY;
+	}
+
+	/**
+	 * @return nbLevels
+	 * The last level has a single block
+	 */
+	public int getLevelCount() {
+		return this.nbLevels;
+	}
+
+	/**
+	 * @param level
+	 * @return shift
+	 * The blocks of the level contain 2^shift x 2^shift cases
+	 */
+	public int getLevelShift(int level) {
+		return BLOCK_SHIFT + level;
+	}
+
+	/**
+	 * @param level
+	 * @return blocksX
+	 */
+	public int getBlocksX(int level) {
+		return ((this.blocksX - 1) >> level) + 1;
+	}
+
+	/**
+	 * @param level
+	 * @return blocksY
+	 */
+	public int getBlocksY(int level) {
+		return ((this.blocksY - 1) >> level) + 1;
+	}
+
+	/** Lists the nodes whose signed sum is the sum of the blocks of a range, for each range :
+	 * the nodes of the prefix of the end minus those of the prefix of the start, the common ones skipped
+	 * @param first
+	 * The first block of the first range
+	 * @param nbRanges
+	 * @param rangeShift
+	 * The ranges contain 2^rangeShift blocks, the last one stopping at the end of the trees
+	 * @param size
+	 * The number of blocks of the trees in this direction
+	 * @param start
+	 * Receives the position of the nodes of each range in nodes, nbRanges + 1 long
+	 * @return nodes
+	 * The signed indexes of the nodes, negative to be subtracted (-i for the node i)
+	 */
+	private static int[] rangeNodes(int first, int nbRanges, int rangeShift, int size, int[] start) {
+		// Each prefix has at most one node per bit of the size
+		int[] nodes = new int[nbRanges * 2 * (32 - Integer.numberOfLeadingZeros(size))];
+		int n = 0;
+		for (int r = 0; r < nbRanges; r++) {
+			start[r] = n;
+			int lo = (first + r) << rangeShift;
+			int hi = Math.min((first + r + 1) << rangeShift, size);
+			while (lo != hi) {
+				if (hi > lo) {
+					nodes[n++] = hi;
+					hi -= hi & -hi;
+				} else {
+					nodes[n++] = -lo;
+					lo -= lo & -lo;
+				}
+			}
+		}
+		start[nbRanges] = n;
+		return nodes;
+	}
+
+	/** Copies the sums of a rectangle of blocks of a level. Each row of the trees is read at once,
+	 * but the rows are not all read at the same time : while cases are modified, a sum may miss or count twice
+	 * the modification of another block
+	 * @param level
+	 * @param bx0
+	 * @param by0
+	 * The first block of the rectangle
+	 * @param nbX
+	 * @param nbY
+	 * The size of the rectangle, in blocks, which must be inside the level
+	 * @param dust
+	 * @param jewels
+	 * @param robots
+	 * @param walls
+	 * Receive the sums of the blocks in row order, at least nbX * nbY long
+	 */
+	public void copyBlocks(int level, int bx0, int by0, int nbX, int nbY, long[] dust, int[] jewels, int[] robots, int[] walls) {
+		Arrays.fill(dust, 0, nbX * nbY, 0);
+		Arrays.fill(jewels, 0, nbX * nbY, 0);
+		Arrays.fill(robots, 0, nbX * nbY, 0);
+		Arrays.fill(walls, 0, nbX * nbY, 0);
+		int[] rowStart = new int[nbX + 1];
+		int[] rows = rangeNodes(bx0, nbX, level, this.blocksX, rowStart);
+		int[] columnStart = new int[nbY + 1];
+		int[] columns = rangeNodes(by0, nbY, level, this.blocksY, columnStart);
+		for (int a = 0; a < nbX; a++) {
+			for (int r = rowStart[a]; r < rowStart[a + 1]; r++) {
+				int i = Math.abs(rows[r]);
+				int rowSign = rows[r] > 0 ? 1 : -1;
+				synchronized (this.locks[i & (STRIPES - 1)]) {
+					for (int b = 0; b < nbY; b++) {
+						int k = a * nbY + b;
+						for (int c = columnStart[b]; c < columnStart[b + 1]; c++) {
+							int node = this.node(i, Math.abs(columns[c]));
+							int sign = columns[c] > 0 ? rowSign : -rowSign;
+							dust[k] += sign * this.dust[node];
+							jewels[k] += sign * this.jewels[node];
+							robots[k] += sign * this.robots[node];
+							walls[k] += sign * this.walls[node];
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param bx0
+	 * @param by0
+	 * @param bx1
+	 * @param by1
+	 * The opposite corners of the rectangle of blocks, included
+	 * @return sums
+	 * The dust, the jewels, the robots and the walls of the blocks of the rectangle
+	 */
+	private long[] sum(int bx0, int by0, int bx1, int by1) {
+		long[] sums = new long[4];
+		// The rectangle is clipped to the grid
+		bx0 = Math.max(bx0, 0);
+		by0 = Math.max(by0, 0);
+		bx1 = Math.min(bx1, this.blocksX - 1);
+		by1 = Math.min(by1, this.blocksY - 1);
+		if (bx0 > bx1 || by0 > by1) {
+			return sums;
+		}
+		for (int hiX = bx1 + 1, loX = bx0; hiX != loX; ) {
+			int i;
+			int rowSign;
+			if (hiX > loX) {
+				i = hiX;
+				rowSign = 1;
+				hiX -= hiX & -hiX;
+			} else {
+				i = loX;
+				rowSign = -1;
+				loX -= loX & -loX;
+			}
+			synchronized (this.locks[i & (STRIPES - 1)]) {
+				for (int hiY = by1 + 1, loY = by0; hiY != loY; ) {
+					int node;
+					int sign;
+					if (hiY > loY) {
+						node = this.node(i, hiY);
+						sign = rowSign;
+						hiY -= hiY & -hiY;
+					} else {
+						node = this.node(i, loY);
+						sign = -rowSign;
+						loY -= loY & -loY;
+					}
+					sums[0] += sign * this.dust[node];
+					sums[1] += sign * this.jewels[node];
+					sums[2] += sign * this.robots[node];
+					sums[3] += sign * this.walls[node];
+				}
+			}
+		}
+		return sums;
+	}
+
+	/**
+	 * @param bx0
+	 * @param by0
+	 * @param bx1
+	 * @param by1
+	 * The opposite corners of the rectangle of blocks, included
+	 * @return dust
+	 * The total dust level of the cases of the blocks
+	 */
+	public long getDust(int bx0, int by0, int bx1, int by1) {
+		return this.sum(bx0, by0, bx1, by1)[0];
+	}
+
+	/**
+	 * @param bx0
+	 * @param by0
+	 * @param bx1
+	 * @param by1
+	 * The opposite corners of the rectangle of blocks, included
+	 * @return jewels
+	 * The number of jewels in the blocks
+	 */
+	public int getJewels(int bx0, int by0, int bx1, int by1) {
+		return (int) this.sum(bx0, by0, bx1, by1)[1];
+	}
+
+	/**
+	 * @param bx0
+	 * @param by0
+	 * @param bx1
+	 * @param by1
+	 * The opposite corners of the rectangle of blocks, included
+	 * @return robots
+	 * The number of robots in the blocks
+	 */
+	public int getRobots(int bx0, int by0, int bx1, int by1) {
+		return (int) this.sum(bx0, by0, bx1, by1)[2];
+	}
+
+	/**
+	 * @param bx0
+	 * @param by0
+	 * @param bx1
+	 * @param by1
+	 * The opposite corners of the rectangle of blocks, included
+	 * @return walls
+	 * The number of walls in the blocks
+	 */
+	public int getWalls(int bx0, int by0, int bx1, int by1) {
+		return (int) this.sum(bx0, by0, bx1, by1)[3];
+	}
+
+	/**
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * The opposite corners of the rectangle of cases, included
+	 * @return sums
+	 * The dust, the jewels, the robots and the walls of the cases of the rectangle
+	 */
+	private long[] sumCases(int x0, int y0, int x1, int y1) {
+		// The rectangle is clipped to the grid
+		x0 = Math.max(x0, 0);
+		y0 = Math.max(y0, 0);
+		x1 = Math.min(x1, this.grid.getSizeX() - 1);
+		y1 = Math.min(y1, this.grid.getSizeY() - 1);
+		if (x0 > x1 || y0 > y1) {
+			return new long[4];
+		}
+		int mask = (1 << BLOCK_SHIFT) - 1;
+		// The blocks inside the rectangle, the last blocks of the grid being inside if the rectangle reaches its end
+		int bx0 = (x0 + mask) >> BLOCK_SHIFT;
+		int by0 = (y0 + mask) >> BLOCK_SHIFT;
+		int bx1 = x1 == this.grid.getSizeX() - 1 ? this.blocksX - 1 : ((x1 + 1) >> BLOCK_SHIFT) - 1;
+		int by1 = y1 == this.grid.getSizeY() - 1 ? this.blocksY - 1 : ((y1 + 1) >> BLOCK_SHIFT) - 1;
+		long[] sums;
+		int innerX0 = x1 + 1;
+		int innerX1 = x1;
+		int innerY0 = y1 + 1;
+		int innerY1 = y1;
+		if (bx0 <= bx1 && by0 <= by1) {
+			sums = this.sum(bx0, by0, bx1, by1);
+			innerX0 = bx0 << BLOCK_SHIFT;
+			innerX1 = Math.min(((bx1 + 1) << BLOCK_SHIFT) - 1, x1);
+			innerY0 = by0 << BLOCK_SHIFT;
+			innerY1 = Math.min(((by1 + 1) << BLOCK_SHIFT) - 1, y1);
+		} else {
+			sums = new long[4];
+		}
+		// Then the cases around the blocks, one by one
+		for (int x = x0; x <= x1; x++) {
+			boolean inner = x >= innerX0 && x <= innerX1;
+			for (int y = y0; y <= y1; y++) {
+				if (inner && y == innerY0) {
+					y = innerY1;
+					continue;
+				}
+				int cell = this.grid.getCell(x, y);
+				sums[0] += Grid.dustLevel(cell);
+				sums[1] += Grid.hasJewel(cell) ? 1 : 0;
+				sums[2] += Grid.isRobot(cell) ? 1 : 0;
+				sums[3] += Grid.isWall(cell) ? 1 : 0;
+			}
+		}
+		return sums;
+	}
+
+	/**
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * The opposite corners of the rectangle of cases, included, which need not be aligned on the blocks
+	 * @return dust
+	 * The total dust level of the cases of the rectangle
+	 */
+	public long getCasesDust(int x0, int y0, int x1, int y1) {
+		return this.sumCases(x0, y0, x1, y1)[0];
+	}
+
+	/**
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * The opposite corners of the rectangle of cases, included, which need not be aligned on the blocks
+	 * @return jewels
+	 * The number of jewels in the cases of the rectangle
+	 */
+	public int getCasesJewels(int x0, int y0, int x1, int y1) {
+		return (int) this.sumCases(x0, y0, x1, y1)[1];
+	}
+
+	/** Finds the blocks of a level containing the most dust
+	 * @param level
+	 * @param nbRegions
+	 * @return regions
+	 * The first case of the dirtiest blocks, the dirtiest first, at most nbRegions of them.
+	 * The blocks without dust are not given
+	 */
+	public List<Coordinates> getDirtiestRegions(int level, int nbRegions) {
+		List<Coordinates> regions = new ArrayList<Coordinates>();
+		if (nbRegions <= 0) {
+			return regions;
+		}
+		int nbX = this.getBlocksX(level);
+		int nbY = this.getBlocksY(level);
+		long[] dust = new long[nbY];
+		int[] jewels = new int[nbY];
+		int[] robots = new int[nbY];
+		int[] walls = new int[nbY];
+		// The dirtiest blocks found so far, in decreasing order of dust
+		long[] bestDust = new long[nbRegions];
+		int[] bestBlock = new int[nbRegions];
+		int nbBest = 0;
+		for (int a = 0; a < nbX; a++) {
+			this.copyBlocks(level, a, 0, 1, nbY, dust, jewels, robots, walls);
+			for (int b = 0; b < nbY; b++) {
+				if (dust[b] <= 0 || (nbBest == nbRegions && dust[b] <= bestDust[nbBest - 1])) {
+					continue;
+				}
+				int k = Math.min(nbBest, nbRegions - 1);
+				while (k > 0 && bestDust[k - 1] < dust[b]) {
+					bestDust[k] = bestDust[k - 1];
+					bestBlock[k] = bestBlock[k - 1];
+					k--;
+				}
+				bestDust[k] = dust[b];
+				bestBlock[k] = a * nbY + b;
+				nbBest = Math.min(nbBest + 1, nbRegions);
+			}
+		}
+		int shift = this.getLevelShift(level);
+		for (int k = 0; k < nbBest; k++) {
+			regions.add(new Coordinates((bestBlock[k] / nbY) << shift, (bestBlock[k] % nbY) << shift));
+		}
+		return regions;
+	}
+
+}
@@ -0,0 +1,142 @@
+package Grid;
+import java.util.Arrays;
+
+/* Distances from a source case to the other cases of a grid with walls, moving from a case to its 4 neighbours.
+ * The field is computed by a breadth first search, expanded only as far as the queries need it :
+ * the distances are stored in tiles allocated when the search reaches them. It can be queried by several threads
+ */
+public class DistanceField {
+
+	/** Distance of the cases which cannot be reached from the source */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+	// The distances are stored in tiles of 2^TILE_SHIFT x 2^TILE_SHIFT cases
+	private static final int TILE_SHIFT = 5;
+	private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+
+	private Grid grid;
+	private int sourceX;
+	private int sourceY;
+	private int tilesY;
+	// distance + 1 of each reached case, 0 if the search has not reached it yet
+	private int[][] tiles;
+	private int allocatedCells;
+	// The cases reached but not expanded yet, in the order they were reached
+	private long[] queue;
+	private int head;
+	private int tail;
+
+	/**
+	 * @param grid
+	 * The walls of the grid are read as the search expands : they must not change
+	 * @param source
+	 */
+	public DistanceField(Grid grid, Coordinates source) {
+		this.grid = grid;
+		this.sourceX = source.x;
+		this.sourceY = source.y;
+		this.tilesY = (grid.getSizeY() + TILE_MASK) >> TILE_SHIFT;
+		this.tiles = new int[((grid.getSizeX() + TILE_MASK) >> TILE_SHIFT) * this.tilesY][];
+		this.allocatedCells = 0;
+		this.queue = new long[64];
+		this.head = 0;
+		this.tail = 0;
+		if (grid.isPassable(source.x, source.y)) {
+			this.reach(source.x, source.y, 0);
+		}
+	}
+
+	/**
+	 * @return source
+	 */
+	public Coordinates getSource() {
+		return new Coordinates(this.sourceX, this.sourceY);
+	}
+
+	/**
+	 * @return allocatedCells
+	 * The number of distances stored, which grows as the search expands
+	 */
+	public synchronized int getAllocatedCells() {
+		return this.allocatedCells;
+	}
+
+	/** Returns the length of the shortest path from the source to the [x,y] case,
+	 * expanding the search until it reaches the case
+	 * @param x
+	 * @param y
+	 * @return distance
+	 * UNREACHABLE if the case does not exist, is a wall or is separated from the source by walls
+	 */
+	public synchronized int get(int x, int y) {
+		if (!this.grid.isInside(x, y)) {
+			return UNREACHABLE;
+		}
+		int stored = this.stored(x, y);
+		while (stored == 0 && this.head < this.tail) {
+			this.expand();
+			stored = this.stored(x, y);
+		}
+		return stored == 0 ? UNREACHABLE : stored - 1;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return stored
+	 * The distance + 1 of the case, 0 if it has not been reached yet
+	 */
+	private int stored(int x, int y) {
+		int[] tile = this.tiles[(x >> TILE_SHIFT) * this.tilesY + (y >> TILE_SHIFT)];
+		return tile == null ? 0 : tile[((x & TILE_MASK) << TILE_SHIFT) | (y & TILE_MASK)];
+	}
+
+	/** Expands the first case of the queue : its passable neighbours not reached yet are reached
+	 */
+	private void expand() {
+		long key = this.queue[this.head++];
+		int x = Grid.keyX(key);
+		int y = Grid.keyY(key);
+		int next = this.stored(x, y);
+		this.visit(x - 1, y, next);
+		this.visit(x + 1, y, next);
+		this.visit(x, y - 1, next);
+		this.visit(x, y + 1, next);
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param distance
+	 */
+	private void visit(int x, int y, int distance) {
+		if (this.grid.isPassable(x, y) && this.stored(x, y) == 0) {
+			this.reach(x, y, distance);
+		}
+	}
+
+	/** Stores the distance of a case and queues it
+	 * @param x
+	 * @param y
+	 * @param distance
+	 */
+	private void reach(int x, int y, int distance) {
+		int t = (x >> TILE_SHIFT) * this.tilesY + (y >> TILE_SHIFT);
+		if (this.tiles[t] == null) {
+			this.tiles[t] = new int[1 << (2 * TILE_SHIFT)];
+			this.allocatedCells += this.tiles[t].length;
+		}
+		this.tiles[t][((x & TILE_MASK) << TILE_SHIFT) | (y & TILE_MASK)] = distance + 1;
+		if (this.tail == this.queue.length) {
+			// The expanded cases are dropped from the queue before it grows
+			if (this.head * 2 >= this.tail) {
+				System.arraycopy(this.queue, this.head, this.queue, 0, this.tail - this.head);
+			} else {
+				this.queue = Arrays.copyOfRange(this.queue, this.head, this.head + this.queue.length * 2);
+			}
+			this.tail -= this.head;
+			this.head = 0;
+		}
+		this.queue[this.tail++] = Grid.key(x, y);
+	}
+
+}
@@ -1,35 +1,307 @@
 package Grid;
-public class Grid {
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* The cases of the grid are packed in ints : the dust level is stored on the 16 lowest bits,
+ * followed by the jewel bit, the robot field (0 if no robot, else the robot id + 1) and the wall bit.
+ * The packed cases are stored in square tiles, shared between a grid and its copies
+ * and only duplicated when one of them modifies it (copy on write).
+ * The tiles are sparse : an empty tile is not allocated until a case of it is written,
+ * and is freed when all its cases become empty again, so that a large and mostly clean
+ * grid only takes memory for its dirty areas.
+ * A grid can also keep its cases in a memory-mapped file (see map) : they are then off the heap,
+ * and found again when the file is mapped by another process. Its copies are kept in memory, and share
+ * the tiles of the file until the mapped grid modifies them (see MappedTile)
+ * The cases containing dust or a jewel (the objectives) are indexed as they change
+ */
+public class Grid implements CaseReader {
+
+	/** Mask of the dust level in a packed case */
+	public static final int DUST_MASK = 0xFFFF;
+	/** Bit set when the case contains a jewel */
+	public static final int JEWEL_BIT = 1 << 16;
+	/** The robot field holds the id + 1 of the robot on the case, 0 if there is none */
+	public static final int ROBOT_SHIFT = 17;
+	public static final int ROBOT_MASK = 0x3FFF << ROBOT_SHIFT;
+	/** Highest number of robots a grid can tell apart */
+	public static final int MAX_ROBOTS = ROBOT_MASK >>> ROBOT_SHIFT;
+	/** Bit set when the case is a wall, which the robots cannot cross */
+	public static final int WALL_BIT = 1 << 31;
+	/** The tiles contain at most 2^MAX_TILE_SHIFT x 2^MAX_TILE_SHIFT cases */
+	public static final int MAX_TILE_SHIFT = 6;
+	// The index of the objectives is split in at most OBJECTIVE_STRIPES parts, each one covering
+	// the tiles with the same index modulo the number of parts (like the locks of Manor)
+	private static final int OBJECTIVE_STRIPES = 64;
+	// The tile shared by all the empty areas, for each tile size. It is never modified
+	private static final int[][] EMPTY_TILES = new int[MAX_TILE_SHIFT + 1][];
+	// Source of the wall versions, so that two grids with the same version have the same walls
+	private static final AtomicLong WALL_VERSIONS = new AtomicLong();
+	static {
+		for (int shift = 0; shift <= MAX_TILE_SHIFT; shift++) {
+			EMPTY_TILES[shift] = new int[1 << (2 * shift)];
+		}
+	}
 
 	private int sizeX;
 	private int sizeY;
-	private Case [][] grid;
+	// A tile contains 2^tileShift x 2^tileShift cases, in row order
+	private int tileShift;
+	private int tileMask;
+	private int tilesX;
+	private int tilesY;
+	private int [][] tiles;
+	private int [] emptyTile;
+	// The number of non empty cases of each tile
+	private int [] tileCount;
+	// A tile belongs to this grid (and can be modified in place) if its epoch is the current one
+	private int [] tileEpoch;
+	private int epoch;
+	// The cases with dust or a jewel, by part of the grid. Each part is shared with the copies like the tiles,
+	// and modified while holding its own lock : the threads modifying different parts never wait for each other
+	private CellSet [] objectives;
+	private int [] objectivesEpochs;
+	private Object [] objectivesLocks;
+	// The number of walls, and the version of the walls, changed by each modification of them (0 if there never were walls)
+	private volatile int wallCount;
+	private volatile long wallVersion;
+	// The cases of a mapped grid, which has no tiles in memory, else null
+	private MappedCells mapped;
+	// The tiles of a mapped file which are shared with this grid (mapped or copied from it), by tile, null
+	// for the tiles modified since. A copy has a null tile, read on first access, where it has a mapped tile
+	private MappedTile [] mappedTiles;
+	// The listeners are not shared with the copies of the grid
+	private volatile GridListener [] listeners;
+	// The sums of the blocks of the grid, null until they are first used. They are not shared with the copies either
+	private DensityMap densityMap;
+
+	/** A tile of a mapped file, as it was when the copies of the mapped grid sharing it were created.
+	 * It is read from the file by the first copy which accesses it, or by the mapped grid before it modifies
+	 * the tile : the copies then find the cases they were created with, the file only holds the latest ones
+	 */
+	private static class MappedTile {
+
+		private MappedCells mapped;
+		private int index;
+		// The cases of the tile, null until they are read
+		private int[] cells;
+
+		/**
+		 * @param mapped
+		 * @param index
+		 */
+		private MappedTile(MappedCells mapped, int index) {
+			this.mapped = mapped;
+			this.index = index;
+		}
+
+		/** Reads the cases of the tile if they have not been read yet, which no thread modifies in the meantime
+		 * (the mapped grid reads them itself before modifying the tile)
+		 * @return cells
+		 * Shared by all the grids reading the tile, it must not be modified
+		 */
+		private synchronized int[] read() {
+			if (this.cells == null) {
+				this.cells = new int[1 << (2 * this.mapped.getTileShift())];
+				this.mapped.readTile(this.index, this.cells);
+			}
+			return this.cells;
+		}
+
+	}
 
 	public Grid(int sizeX, int sizeY) {
+		this.initSize(sizeX, sizeY, tileShift(sizeX, sizeY));
+		// All the cases of the grid are empty, no tile is allocated yet
+		this.emptyTile = EMPTY_TILES[this.tileShift];
+		this.tiles = new int[this.tilesX * this.tilesY][];
+		Arrays.fill(this.tiles, this.emptyTile);
+		this.tileCount = new int[this.tiles.length];
+		this.tileEpoch = new int[this.tiles.length];
+		this.epoch = 0;
+		this.initObjectives();
+		this.listeners = new GridListener[0];
+	}
+
+	/** Creates a grid keeping its cases in a mapped file
+	 * @param mapped
+	 */
+	private Grid(MappedCells mapped) {
+		this.initSize(mapped.getSizeX(), mapped.getSizeY(), mapped.getTileShift());
+		this.emptyTile = EMPTY_TILES[this.tileShift];
+		this.mapped = mapped;
+		this.mappedTiles = new MappedTile[this.tilesX * this.tilesY];
+		this.epoch = 0;
+		this.initObjectives();
+		this.listeners = new GridListener[0];
+		// The objectives are indexed again, from the non empty tiles only
+		int[] tile = new int[this.emptyTile.length];
+		for (int t = 0; t < this.tilesX * this.tilesY; t++) {
+			if (mapped.getCount(t) == 0) {
+				continue;
+			}
+			mapped.readTile(t, tile);
+			// The counts may be too high if the previous process has crashed
+			mapped.recount(t, tile);
+			int x0 = (t / this.tilesY) << this.tileShift;
+			int y0 = (t % this.tilesY) << this.tileShift;
+			for (int i = 0; i < tile.length; i++) {
+				if (isObjective(tile[i])) {
+					this.updateObjectives(t, key(x0 + (i >> this.tileShift), y0 + (i & this.tileMask)), true);
+				}
+				if (isWall(tile[i])) {
+					this.wallCount++;
+				}
+			}
+		}
+		if (this.wallCount > 0) {
+			this.wallVersion = WALL_VERSIONS.incrementAndGet();
+		}
+	}
+
+	/** Maps a grid file, creating it with empty cases if it does not exist yet.
+	 * The cases of the returned grid are kept in the file : the modifications are found again
+	 * when the file is mapped again, even by another process
+	 * @param file
+	 * @param sizeX
+	 * @param sizeY
+	 * @return grid
+	 * @throws IOException
+	 * If the file exists but is not a grid file of the given size
+	 */
+	public static Grid map(Path file, int sizeX, int sizeY) throws IOException {
+		if (Files.exists(file)) {
+			Grid grid = map(file);
+			if (grid.sizeX != sizeX || grid.sizeY != sizeY) {
+				throw new IOException(file + " contains a grid of size " + grid.sizeX + "x" + grid.sizeY);
+			}
+			return grid;
+		}
+		return new Grid(new MappedCells(file, sizeX, sizeY, tileShift(sizeX, sizeY)));
+	}
+
+	/** Maps an existing grid file
+	 * @param file
+	 * @return grid
+	 * @throws IOException
+	 * If the file is not a grid file
+	 */
+	public static Grid map(Path file) throws IOException {
+		return new Grid(new MappedCells(file));
+	}
+
+	/**
+	 * @param sizeX
+	 * @param sizeY
+	 * @return tileShift
+	 */
+	private static int tileShift(int sizeX, int sizeY) {
+		// Small grids use smaller tiles, so that copying a tile stays cheap
+		int maxSize = Math.max(Math.max(sizeX, sizeY) - 1, 1);
+		return Math.min(MAX_TILE_SHIFT, 32 - Integer.numberOfLeadingZeros(maxSize));
+	}
+
+	/**
+	 * @param sizeX
+	 * @param sizeY
+	 * @param tileShift
+	 */
+	private void initSize(int sizeX, int sizeY, int tileShift) {
 		this.sizeX = sizeX;
 		this.sizeY = sizeY;
-		this.grid = new Case[sizeX][sizeY];
-		// Initializes all the cases of the grid
-		for (int i = 0; i < sizeX; i++) {
-			for (int j = 0; j < sizeY; j++) {
-				this.grid[i][j] = new Case();
-			}
+		this.tileShift = tileShift;
+		this.tileMask = (1 << this.tileShift) - 1;
+		this.tilesX = (sizeX + this.tileMask) >> this.tileShift;
+		this.tilesY = (sizeY + this.tileMask) >> this.tileShift;
+	}
+
+	/**
+	 * @return mapped
+	 * True if the cases of the grid are kept in a mapped file
+	 */
+	public boolean isMapped() {
+		return this.mapped != null;
+	}
+
+	/** Writes the modified cases of a mapped grid to its file, does nothing for a grid in memory
+	 */
+	public void flush() {
+		if (this.mapped != null) {
+			this.mapped.force();
 		}
 	}
 
-	/** Copy constructor, used to create an independent path for the robot
+	/** Copy constructor, used to create an independent path for the robot.
+	 * The tiles are shared : the copy costs one reference per tile, and each tile
+	 * is only duplicated by the first grid which modifies it.
+	 * The copy of a mapped grid reads none of its cases : the non empty tiles of the file are read
+	 * on first access, by the copy or by the mapped grid before it modifies them
 	 * @param grid
 	 */
 	public Grid(Grid g) {
 		this.sizeX = g.sizeX;
 		this.sizeY = g.sizeY;
-		this.grid = new Case[sizeX][sizeY];
-		// Copies all the cases of the grid
-		for (int i = 0; i < sizeX; i++) {
-			for (int j = 0; j < sizeY; j++) {
-				this.grid[i][j] = new Case(g.getCase(i, j));
+		this.tileShift = g.tileShift;
+		this.tileMask = g.tileMask;
+		this.tilesX = g.tilesX;
+		this.tilesY = g.tilesY;
+		this.emptyTile = g.emptyTile;
+		this.epoch = 1;
+		if (g.mapped != null) {
+			// The non empty tiles of the mapped grid are shared with the copy, and not read yet
+			this.tiles = new int[this.tilesX * this.tilesY][];
+			this.tileCount = new int[this.tiles.length];
+			this.mappedTiles = new MappedTile[this.tiles.length];
+			for (int t = 0; t < this.tiles.length; t++) {
+				this.tileCount[t] = g.mapped.getCount(t);
+				if (this.tileCount[t] == 0) {
+					this.tiles[t] = this.emptyTile;
+				} else {
+					if (g.mappedTiles[t] == null) {
+						g.mappedTiles[t] = new MappedTile(g.mapped, t);
+					}
+					this.mappedTiles[t] = g.mappedTiles[t];
+				}
+			}
+		} else {
+			this.tiles = g.tiles.clone();
+			this.tileCount = g.tileCount.clone();
+			if (g.mappedTiles != null) {
+				this.mappedTiles = g.mappedTiles.clone();
 			}
 		}
+		// None of the tiles belongs to the copy, nor to the original grid anymore
+		this.tileEpoch = new int[this.tiles.length];
+		g.epoch++;
+		this.objectives = g.objectives.clone();
+		this.objectivesEpochs = new int[this.objectives.length];
+		this.objectivesLocks = newLocks(this.objectives.length);
+		this.wallCount = g.wallCount;
+		this.wallVersion = g.wallVersion;
+		this.listeners = new GridListener[0];
+	}
+
+	/** Registers a listener notified of every modification of the cases.
+	 * The listener is called by the modifying thread, and must be thread safe if several threads modify the grid
+	 * @param listener
+	 */
+	public synchronized void addListener(GridListener listener) {
+		GridListener[] newListeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+		newListeners[this.listeners.length] = listener;
+		this.listeners = newListeners;
+	}
+
+	/** Returns the sums of the blocks of the grid, created the first time (they then follow every modification of the grid).
+	 * The grid must not be modified during the first call
+	 * @return densityMap
+	 */
+	public synchronized DensityMap getDensityMap() {
+		if (this.densityMap == null) {
+			this.densityMap = new DensityMap(this);
+		}
+		return this.densityMap;
 	}
 
 	/**
@@ -47,30 +319,578 @@ public class Grid {
 	}
 
 	/**
-	 * @return grid
+	 * @return tileShift
+	 * The tiles contain 2^tileShift x 2^tileShift cases
 	 */
-	public Case[][] getGrid() {
-		return this.grid;
+	public int getTileShift() {
+		return this.tileShift;
 	}
 
 	/**
-	 * @param grid
+	 * @return tilesX
+	 */
+	public int getTilesX() {
+		return this.tilesX;
+	}
+
+	/**
+	 * @return tilesY
+	 */
+	public int getTilesY() {
+		return this.tilesY;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return tileIndex
+	 * The index of the tile containing the [x,y] case, in row order
+	 */
+	public int getTileIndex(int x, int y) {
+		return (x >> this.tileShift) * this.tilesY + (y >> this.tileShift);
+	}
+
+	/**
+	 * @return allocatedTiles
+	 * The number of tiles containing at least one non empty case, the other ones take no memory
+	 */
+	public int getAllocatedTileCount() {
+		int allocatedTiles = 0;
+		for (int t = 0; t < this.tilesX * this.tilesY; t++) {
+			if (this.mapped != null ? this.mapped.getCount(t) != 0 : this.tiles[t] != this.emptyTile) {
+				allocatedTiles++;
+			}
+		}
+		return allocatedTiles;
+	}
+
+	/**
+	 * @param tx
+	 * @param ty
+	 * @return empty
+	 * True if all the cases of the tile [tx, ty] are empty
+	 */
+	public boolean isEmptyTile(int tx, int ty) {
+		if (this.mapped != null) {
+			return this.mapped.getCount(tx * this.tilesY + ty) == 0;
+		}
+		return this.tiles[tx * this.tilesY + ty] == this.emptyTile;
+	}
+
+	/** Direct read access to the packed cases of a tile, in row order.
+	 * With s = getTileShift() and m = 2^s - 1, the [x,y] case of the grid is at index ((x & m) << s) | (y & m)
+	 * of the tile [x >> s, y >> s]. The array may be shared (with other grids, or between all the empty tiles),
+	 * it must not be modified. The tiles of a mapped grid are read in a new array
+	 * @param tx
+	 * @param ty
+	 * @return tile
 	 */
-	public void setGrid(Case[][] grid) {
-		this.grid = grid;
+	public int[] getTile(int tx, int ty) {
+		int t = tx * this.tilesY + ty;
+		if (this.mapped != null) {
+			if (this.mapped.getCount(t) == 0) {
+				return this.emptyTile;
+			}
+			int[] tile = new int[this.emptyTile.length];
+			this.mapped.readTile(t, tile);
+			return tile;
+		}
+		return this.tiles[t] != null ? this.tiles[t] : this.readMappedTile(t);
 	}
 
-	/** Returns the [x,y] case of the grid if existing, else null
+	/** Reads a tile shared with a mapped grid, on first access
+	 * @param t
+	 * @return tile
+	 */
+	private int[] readMappedTile(int t) {
+		int[] tile = this.mappedTiles[t].read();
+		this.tiles[t] = tile;
+		return tile;
+	}
+
+	@Override
+	public void readCases(int x0, int y0, int x1, int y1, int[] cells) {
+		for (int tx = x0 >> this.tileShift; tx <= x1 >> this.tileShift; tx++) {
+			for (int ty = y0 >> this.tileShift; ty <= y1 >> this.tileShift; ty++) {
+				this.readTile(tx, ty, x0, y0, x1, y1, cells);
+			}
+		}
+	}
+
+	/** Copies the packed cases of a tile which are in the rectangle [x0..x1] x [y0..y1], which must be inside the grid
+	 * @param tx
+	 * @param ty
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @param cells
+	 * Receives the cases in row order of the rectangle (see CaseReader)
+	 */
+	public void readTile(int tx, int ty, int x0, int y0, int x1, int y1, int[] cells) {
+		int[] tile = this.getTile(tx, ty);
+		int fromX = Math.max(x0, tx << this.tileShift);
+		int toX = Math.min(x1, ((tx + 1) << this.tileShift) - 1);
+		int fromY = Math.max(y0, ty << this.tileShift);
+		int toY = Math.min(y1, ((ty + 1) << this.tileShift) - 1);
+		int width = y1 - y0 + 1;
+		// The cases of a row of the tile follow each other
+		for (int x = fromX; x <= toX; x++) {
+			System.arraycopy(tile, ((x & this.tileMask) << this.tileShift) | (fromY & this.tileMask),
+					cells, (x - x0) * width + (fromY - y0), toY - fromY + 1);
+		}
+	}
+
+	/** Returns a view on the [x,y] case of the grid if existing, else null
 	 * @param x
 	 * @param y
 	 * @return grid[x][y]
 	 */
 	public Case getCase(int x, int y) {
-		if (x >= 0 && y >=0 && x < this.sizeX && y < this.sizeY) {
-			return this.grid[x][y];
+		if (this.isInside(x, y)) {
+			return new Case(this, x, y);
 		} else {
 			return null;
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * @param x
+	 * @param y
+	 * @return inside
+	 * True if the [x,y] case exists, else false
+	 */
+	public boolean isInside(int x, int y) {
+		return x >= 0 && y >=0 && x < this.sizeX && y < this.sizeY;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return cell
+	 * The packed value of the [x,y] case
+	 */
+	public int getCell(int x, int y) {
+		if (this.mapped != null) {
+			return this.mapped.get((x >> this.tileShift) * this.tilesY + (y >> this.tileShift), ((x & this.tileMask) << this.tileShift) | (y & this.tileMask));
+		}
+		int t = (x >> this.tileShift) * this.tilesY + (y >> this.tileShift);
+		int[] tile = this.tiles[t] != null ? this.tiles[t] : this.readMappedTile(t);
+		return tile[((x & this.tileMask) << this.tileShift) | (y & this.tileMask)];
+	}
+
+	/** Overwrites the packed value of the [x,y] case
+	 * @param x
+	 * @param y
+	 * @param cell
+	 */
+	public void setCell(int x, int y, int cell) {
+		int t = (x >> this.tileShift) * this.tilesY + (y >> this.tileShift);
+		int i = ((x & this.tileMask) << this.tileShift) | (y & this.tileMask);
+		int oldCell = this.mapped != null ? this.mapped.get(t, i) : this.getTile(t / this.tilesY, t % this.tilesY)[i];
+		if (oldCell == cell) {
+			return;
+		}
+		if (this.mappedTiles != null && this.mappedTiles[t] != null) {
+			if (this.mapped != null) {
+				// The copies sharing the tile keep its cases as they were before
+				this.mappedTiles[t].read();
+			}
+			this.mappedTiles[t] = null;
+		}
+		if (this.mapped != null) {
+			this.mapped.set(t, i, oldCell, cell);
+		} else if (cell == 0 && --this.tileCount[t] == 0) {
+			// The last non empty case of the tile is cleaned, the tile is freed
+			this.tiles[t] = this.emptyTile;
+		} else {
+			if (oldCell == 0 && this.tileCount[t]++ == 0) {
+				// First non empty case of an empty tile
+				this.tiles[t] = new int[this.emptyTile.length];
+				this.tileEpoch[t] = this.epoch;
+			} else if (this.tileEpoch[t] != this.epoch) {
+				// The tile is duplicated if it is shared with another grid
+				this.tiles[t] = this.tiles[t].clone();
+				this.tileEpoch[t] = this.epoch;
+			}
+			this.tiles[t][i] = cell;
+		}
+		// Updates the index of the objectives
+		boolean objective = isObjective(cell);
+		if (objective != isObjective(oldCell)) {
+			this.updateObjectives(t, key(x, y), objective);
+		}
+		boolean wall = isWall(cell);
+		if (wall != isWall(oldCell)) {
+			this.updateWalls(wall);
+		}
+		GridListener[] listeners = this.listeners;
+		for (int l = 0; l < listeners.length; l++) {
+			listeners[l].cellChanged(x, y, oldCell, cell);
+		}
+	}
+
+	/** Calls the listener for every case which differs between two grids of the same size.
+	 * The tiles shared by the two grids (a grid and its copy, or two copies of the same grid,
+	 * for the tiles neither has modified since, even if they are those of a mapped file) are skipped without being read :
+	 * the cost of the comparison depends on the number of modified tiles
+	 * @param before
+	 * @param after
+	 * @param listener
+	 * Receives the cases of before (oldCell) which differ in after (newCell)
+	 */
+	public static void compare(Grid before, Grid after, GridListener listener) {
+		if (before.sizeX != after.sizeX || before.sizeY != after.sizeY) {
+			throw new IllegalArgumentException("The grids do not have the same size");
+		}
+		for (int tx = 0; tx < before.tilesX; tx++) {
+			for (int ty = 0; ty < before.tilesY; ty++) {
+				int t = tx * before.tilesY + ty;
+				if (before.mappedTiles != null && after.mappedTiles != null
+						&& before.mappedTiles[t] != null && before.mappedTiles[t] == after.mappedTiles[t]) {
+					continue;
+				}
+				int[] oldTile = before.getTile(tx, ty);
+				int[] newTile = after.getTile(tx, ty);
+				if (oldTile == newTile) {
+					continue;
+				}
+				for (int i = 0; i < oldTile.length; i++) {
+					if (oldTile[i] != newTile[i]) {
+						listener.cellChanged((tx << before.tileShift) + (i >> before.tileShift),
+								(ty << before.tileShift) + (i & before.tileMask), oldTile[i], newTile[i]);
+					}
+				}
+			}
+		}
+	}
+
+	/** Creates an empty index of the objectives, in as many parts as tiles (at most OBJECTIVE_STRIPES)
+	 */
+	private void initObjectives() {
+		int nbParts = Math.min(OBJECTIVE_STRIPES, Integer.highestOneBit(this.tilesX * this.tilesY));
+		this.objectives = new CellSet[nbParts];
+		for (int p = 0; p < nbParts; p++) {
+			this.objectives[p] = new CellSet();
+		}
+		this.objectivesEpochs = new int[nbParts];
+		this.objectivesLocks = newLocks(nbParts);
+	}
+
+	/**
+	 * @param nbLocks
+	 * @return locks
+	 */
+	private static Object[] newLocks(int nbLocks) {
+		Object[] locks = new Object[nbLocks];
+		for (int p = 0; p < nbLocks; p++) {
+			locks[p] = new Object();
+		}
+		return locks;
+	}
+
+	/** Adds or removes a case from the index of the objectives. The cases of different tiles
+	 * may be modified by different threads, only the part of the index covering the tile is locked
+	 * @param t
+	 * The index of the tile of the case
+	 * @param key
+	 * @param objective
+	 */
+	private void updateObjectives(int t, long key, boolean objective) {
+		int p = t & (this.objectives.length - 1);
+		synchronized (this.objectivesLocks[p]) {
+			if (this.objectivesEpochs[p] != this.epoch) {
+				this.objectives[p] = new CellSet(this.objectives[p]);
+				this.objectivesEpochs[p] = this.epoch;
+			}
+			if (objective) {
+				this.objectives[p].add(key);
+			} else {
+				this.objectives[p].remove(key);
+			}
+		}
+	}
+
+	/** Counts a wall added or removed, and changes the version of the walls
+	 * @param wall
+	 * True if a wall has been added, false if one has been removed
+	 */
+	private synchronized void updateWalls(boolean wall) {
+		this.wallCount += wall ? 1 : -1;
+		this.wallVersion = WALL_VERSIONS.incrementAndGet();
+	}
+
+	/**
+	 * @return nbWalls
+	 */
+	public int getWallCount() {
+		return this.wallCount;
+	}
+
+	/** The version of the walls changes with every wall added or removed, and is kept by the copies of the grid :
+	 * two grids with the same version have the same walls
+	 * @return wallVersion
+	 * 0 if the grid never had walls
+	 */
+	public long getWallVersion() {
+		return this.wallVersion;
+	}
+
+	/**
+	 * @return nbObjectives
+	 * The number of cases containing dust or a jewel
+	 */
+	public int getObjectiveCount() {
+		int nbObjectives = 0;
+		for (int p = 0; p < this.objectives.length; p++) {
+			synchronized (this.objectivesLocks[p]) {
+				nbObjectives += this.objectives[p].size();
+			}
+		}
+		return nbObjectives;
+	}
+
+	/** Returns the keys of the cases containing dust or a jewel, in no particular order,
+	 * without scanning the grid
+	 * @return objectives
+	 */
+	public long[] getObjectives() {
+		long[][] parts = new long[this.objectives.length][];
+		int nbObjectives = 0;
+		for (int p = 0; p < parts.length; p++) {
+			synchronized (this.objectivesLocks[p]) {
+				parts[p] = this.objectives[p].toArray();
+			}
+			nbObjectives += parts[p].length;
+		}
+		long[] objectives = new long[nbObjectives];
+		int n = 0;
+		for (int p = 0; p < parts.length; p++) {
+			System.arraycopy(parts[p], 0, objectives, n, parts[p].length);
+			n += parts[p].length;
+		}
+		return objectives;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return dustLevel
+	 */
+	public int getDustLevel(int x, int y) {
+		return dustLevel(this.getCell(x, y));
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return jewel
+	 */
+	public boolean hasJewel(int x, int y) {
+		return hasJewel(this.getCell(x, y));
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return robot
+	 */
+	public boolean isRobot(int x, int y) {
+		return isRobot(this.getCell(x, y));
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return wall
+	 */
+	public boolean isWall(int x, int y) {
+		return isWall(this.getCell(x, y));
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return passable
+	 * True if the [x,y] case exists and is not a wall, else false
+	 */
+	public boolean isPassable(int x, int y) {
+		return this.isInside(x, y) && !isWall(this.getCell(x, y));
+	}
+
+	/** Makes the [x,y] case a wall, or removes its wall
+	 * @param x
+	 * @param y
+	 * @param wall
+	 */
+	public void setWall(int x, int y, boolean wall) {
+		int cell = this.getCell(x, y);
+		this.setCell(x, y, wall ? cell | WALL_BIT : cell & ~WALL_BIT);
+	}
+
+	/** Adds some dust (1 level) to the [x,y] case
+	 * @param x
+	 * @param y
+	 * @return dustLevel
+	 */
+	public int addDust(int x, int y) {
+		int cell = this.getCell(x, y);
+		if ((cell & DUST_MASK) < DUST_MASK) {
+			this.setCell(x, y, ++cell);
+		}
+		return cell & DUST_MASK;
+	}
+
+	/** Decreases the dust level of the [x,y] case by 1, if possible
+	 * @param x
+	 * @param y
+	 * @return dustLevel
+	 */
+	public int removeDust(int x, int y) {
+		int cell = this.getCell(x, y);
+		if ((cell & DUST_MASK) >= 1) {
+			this.setCell(x, y, --cell);
+		}
+		return cell & DUST_MASK;
+	}
+
+	/** Adds a jewel to the [x,y] case
+	 * @param x
+	 * @param y
+	 * @return jewelAdded
+	 * True if a jewel has been added, else false
+	 */
+	public boolean addJewel(int x, int y) {
+		int cell = this.getCell(x, y);
+		boolean jewelAdded = (cell & JEWEL_BIT) != 0;
+		if (!jewelAdded) {
+			this.setCell(x, y, cell | JEWEL_BIT);
+		}
+		return jewelAdded;
+	}
+
+	/** Removes the jewel from the [x,y] case
+	 * @param x
+	 * @param y
+	 * @return jewelRemoved
+	 * True if a jewel has been removed, else false
+	 */
+	public boolean removeJewel(int x, int y) {
+		int cell = this.getCell(x, y);
+		boolean jewelRemoved = (cell & JEWEL_BIT) != 0;
+		if (jewelRemoved) {
+			this.setCell(x, y, cell & ~JEWEL_BIT);
+		}
+		return jewelRemoved;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return robotId
+	 * The id of the robot on the [x,y] case, -1 if there is none
+	 */
+	public int getRobotId(int x, int y) {
+		return robotId(this.getCell(x, y));
+	}
+
+	/** Puts the robot 0 on the [x,y] case, or removes the robot from it
+	 * @param x
+	 * @param y
+	 * @param robot
+	 */
+	public void setRobot(int x, int y, boolean robot) {
+		if (robot) {
+			this.setRobot(x, y, 0);
+		} else {
+			this.setRobot(x, y, -1);
+		}
+	}
+
+	/** Puts the given robot on the [x,y] case
+	 * @param x
+	 * @param y
+	 * @param robotId
+	 * The id of the robot, -1 to remove the robot from the case
+	 */
+	public void setRobot(int x, int y, int robotId) {
+		int cell = this.getCell(x, y);
+		this.setCell(x, y, (cell & ~ROBOT_MASK) | ((robotId + 1) << ROBOT_SHIFT));
+	}
+
+	/** Identifies a case by a single long, ordering the cases in row order
+	 * @param x
+	 * @param y
+	 * @return key
+	 */
+	public static long key(int x, int y) {
+		return ((long) x << 32) | y;
+	}
+
+	/**
+	 * @param key
+	 * @return x
+	 */
+	public static int keyX(long key) {
+		return (int) (key >>> 32);
+	}
+
+	/**
+	 * @param key
+	 * @return y
+	 */
+	public static int keyY(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * @param cell
+	 * @return dustLevel
+	 */
+	public static int dustLevel(int cell) {
+		return cell & DUST_MASK;
+	}
+
+	/**
+	 * @param cell
+	 * @return jewel
+	 */
+	public static boolean hasJewel(int cell) {
+		return (cell & JEWEL_BIT) != 0;
+	}
+
+	/**
+	 * @param cell
+	 * @return robot
+	 */
+	public static boolean isRobot(int cell) {
+		return (cell & ROBOT_MASK) != 0;
+	}
+
+	/**
+	 * @param cell
+	 * @return robotId
+	 * The id of the robot on the case, -1 if there is none
+	 */
+	public static int robotId(int cell) {
+		return ((cell & ROBOT_MASK) >>> ROBOT_SHIFT) - 1;
+	}
+
+	/**
+	 * @param cell
+	 * @return wall
+	 */
+	public static boolean isWall(int cell) {
+		return (cell & WALL_BIT) != 0;
+	}
+
+	/**
+	 * @param cell
+	 * @return objective
+	 * True if the case contains dust or a jewel, else false
+	 */
+	public static boolean isObjective(int cell) {
+		return (cell & (DUST_MASK | JEWEL_BIT)) != 0;
+	}
+
+}
@@ -0,0 +1,15 @@
+package Grid;
+
+/* Notified of every modification of the cases of a grid
+ */
+public interface GridListener {
+	
+	/** Called after the packed value of the [x,y] case has changed
+	 * @param x
+	 * @param y
+	 * @param oldCell
+	 * @param newCell
+	 */
+	void cellChanged(int x, int y, int oldCell, int newCell);
+	
+}
@@ -0,0 +1,202 @@
+package Grid;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/* The packed cases of a grid, kept in a memory-mapped file instead of the heap.
+ * Layout of the file (big-endian ints) :
+ * - header : magic number, version, sizeX, sizeY, tileShift
+ * - the number of non empty cases of each tile, in row order of the tiles
+ * - from the next multiple of PAGE_SIZE, the tiles one after the other, with the packed cases
+ *   of each tile in row order (the same layout as the tiles of Grid)
+ * The unwritten parts of the file read as empty cases, most systems do not store them.
+ * The file is only open while it is being mapped
+ */
+class MappedCells {
+
+	static final int MAGIC = 0x56434752; // "VCGR"
+	static final int VERSION = 1;
+	private static final int HEADER_SIZE = 20;
+	private static final int PAGE_SIZE = 4096;
+	// The cases are mapped by chunks of 2^CHUNK_SHIFT cases, a tile never spans two chunks
+	private static final int CHUNK_SHIFT = 28;
+
+	private int sizeX;
+	private int sizeY;
+	private int tileShift;
+	private int tileSize;
+	private int nbTiles;
+	private MappedByteBuffer countsBuffer;
+	private IntBuffer counts;
+	private MappedByteBuffer[] chunkBuffers;
+	private IntBuffer[] chunks;
+
+	/** Maps an existing file, checking its header
+	 * @param file
+	 * @throws IOException
+	 */
+	MappedCells(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0) {
+					break;
+				}
+			}
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+				throw new IOException(file + " is not a grid file");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported version of grid file : " + version);
+			}
+			this.init(channel, header.getInt(), header.getInt(), header.getInt());
+		}
+	}
+
+	/** Creates the file, replacing it if it exists. All the cases are empty
+	 * @param file
+	 * @param sizeX
+	 * @param sizeY
+	 * @param tileShift
+	 * @throws IOException
+	 */
+	MappedCells(Path file, int sizeX, int sizeY, int tileShift) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(sizeX).putInt(sizeY).putInt(tileShift);
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+			this.init(channel, sizeX, sizeY, tileShift);
+		}
+	}
+
+	/** Maps the counts and the cases. The channel can then be closed : the mappings stay valid
+	 * until the buffers are garbage collected
+	 * @param channel
+	 * @param sizeX
+	 * @param sizeY
+	 * @param tileShift
+	 * @throws IOException
+	 */
+	private void init(FileChannel channel, int sizeX, int sizeY, int tileShift) throws IOException {
+		if (sizeX <= 0 || sizeY <= 0 || tileShift < 0 || tileShift > Grid.MAX_TILE_SHIFT) {
+			throw new IOException("Invalid grid file header : " + sizeX + "x" + sizeY + ", tile shift " + tileShift);
+		}
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.tileShift = tileShift;
+		this.tileSize = 1 << (2 * tileShift);
+		int tileMask = (1 << tileShift) - 1;
+		this.nbTiles = ((sizeX + tileMask) >> tileShift) * ((sizeY + tileMask) >> tileShift);
+		this.countsBuffer = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, 4L * this.nbTiles);
+		this.counts = this.countsBuffer.asIntBuffer();
+		long cellsStart = (HEADER_SIZE + 4L * this.nbTiles + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+		long nbCells = (long) this.nbTiles * this.tileSize;
+		int nbChunks = (int) ((nbCells + (1L << CHUNK_SHIFT) - 1) >> CHUNK_SHIFT);
+		this.chunkBuffers = new MappedByteBuffer[nbChunks];
+		this.chunks = new IntBuffer[nbChunks];
+		for (int c = 0; c < nbChunks; c++) {
+			long first = (long) c << CHUNK_SHIFT;
+			long length = Math.min(1L << CHUNK_SHIFT, nbCells - first);
+			this.chunkBuffers[c] = channel.map(FileChannel.MapMode.READ_WRITE, cellsStart + 4 * first, 4 * length);
+			this.chunks[c] = this.chunkBuffers[c].asIntBuffer();
+		}
+	}
+
+	int getSizeX() {
+		return this.sizeX;
+	}
+
+	int getSizeY() {
+		return this.sizeY;
+	}
+
+	int getTileShift() {
+		return this.tileShift;
+	}
+
+	/**
+	 * @param t
+	 * @param i
+	 * @return cell
+	 * The packed value of the i-th case of the tile t
+	 */
+	int get(int t, int i) {
+		long c = (long) t * this.tileSize + i;
+		return this.chunks[(int) (c >>> CHUNK_SHIFT)].get((int) c & ((1 << CHUNK_SHIFT) - 1));
+	}
+
+	/** Overwrites the i-th case of the tile t, and counts its non empty cases.
+	 * The count is increased before a case is filled and decreased after it is cleaned :
+	 * after a crash, a tile may be counted as non empty, never the opposite
+	 * @param t
+	 * @param i
+	 * @param oldCell
+	 * @param cell
+	 */
+	void set(int t, int i, int oldCell, int cell) {
+		if (oldCell == 0) {
+			this.counts.put(t, this.counts.get(t) + 1);
+		}
+		long c = (long) t * this.tileSize + i;
+		this.chunks[(int) (c >>> CHUNK_SHIFT)].put((int) c & ((1 << CHUNK_SHIFT) - 1), cell);
+		if (cell == 0) {
+			this.counts.put(t, this.counts.get(t) - 1);
+		}
+	}
+
+	/**
+	 * @param t
+	 * @return count
+	 * The number of non empty cases of the tile t, 0 if the tile is empty
+	 */
+	int getCount(int t) {
+		return this.counts.get(t);
+	}
+
+	/** Copies the cases of a tile in one bulk read
+	 * @param t
+	 * @param tile
+	 * Receives the packed cases of the tile, in row order
+	 */
+	void readTile(int t, int[] tile) {
+		long c = (long) t * this.tileSize;
+		IntBuffer chunk = this.chunks[(int) (c >>> CHUNK_SHIFT)].duplicate();
+		chunk.position((int) c & ((1 << CHUNK_SHIFT) - 1));
+		chunk.get(tile, 0, this.tileSize);
+	}
+
+	/** Counts again the non empty cases of a tile, after a crash
+	 * @param t
+	 * @param tile
+	 * The cases of the tile
+	 */
+	void recount(int t, int[] tile) {
+		int count = 0;
+		for (int i = 0; i < tile.length; i++) {
+			if (tile[i] != 0) {
+				count++;
+			}
+		}
+		this.counts.put(t, count);
+	}
+
+	/** Writes the modified cases to the file
+	 */
+	void force() {
+		this.countsBuffer.force();
+		for (MappedByteBuffer chunk : this.chunkBuffers) {
+			chunk.force();
+		}
+	}
+
+}
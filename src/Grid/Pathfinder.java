@@ -0,0 +1,188 @@
+package Grid;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Shortest paths between the cases of a grid with walls. The distance fields computed from
+ * each source (see DistanceField) are kept in a cache, the least recently used ones being evicted
+ * when the cache holds too many distances : the distances from a recent source are found in O(1).
+ * Without walls, the distances are the Manhattan distances and no field is computed.
+ * A pathfinder can be shared by several threads, as long as the walls of its grid do not change
+ * (see withGrid)
+ */
+public class Pathfinder {
+
+	/** Default number of distances kept in the cache, all fields together (16M cases, 64 MB) */
+	public static final long DEFAULT_MAX_CELLS = 1L << 24;
+
+	private volatile Grid grid;
+	private volatile long wallVersion;
+	private long maxCells;
+	// The fields by source key, from the least to the most recently used
+	private LinkedHashMap<Long, DistanceField> fields;
+	// The number of distances held by the cache, counted up to the last field given
+	private long cells;
+	private DistanceField lastField;
+	private int lastFieldCells;
+
+	/**
+	 * @param grid
+	 */
+	public Pathfinder(Grid grid) {
+		this(grid, DEFAULT_MAX_CELLS);
+	}
+
+	/**
+	 * @param grid
+	 * @param maxCells
+	 * Number of distances kept in the cache, the most recently used field is always kept
+	 */
+	public Pathfinder(Grid grid, long maxCells) {
+		this.maxCells = maxCells;
+		this.fields = new LinkedHashMap<Long, DistanceField>(16, 0.75f, true);
+		this.setGrid(grid);
+	}
+
+	/** Changes the grid the paths are computed on, for instance a more recent copy of the map.
+	 * The cache is kept if the walls are the same
+	 * @param grid
+	 */
+	public void setGrid(Grid grid) {
+		// Nothing changes most of the time, the lock is only taken to change the grid
+		if (grid == this.grid && grid.getWallVersion() == this.wallVersion) {
+			return;
+		}
+		synchronized (this) {
+			this.changeGrid(grid);
+		}
+	}
+
+	/** Returns a pathfinder on another grid whose walls no thread modifies, for instance a newer snapshot of the map :
+	 * this one if the walls are the same, its cache being kept, else a new one, so that the threads still
+	 * using this one keep expanding its fields over the walls they were computed with
+	 * @param grid
+	 * @return pathfinder
+	 */
+	public synchronized Pathfinder withGrid(Grid grid) {
+		if (!this.hasWallsOf(grid)) {
+			return new Pathfinder(grid, this.maxCells);
+		}
+		this.grid = grid;
+		return this;
+	}
+
+	/**
+	 * @param grid
+	 * @return sameWalls
+	 * True if the grid has the walls of the grid of this pathfinder, whose distances are then those of the grid
+	 */
+	public boolean hasWallsOf(Grid grid) {
+		Grid current = this.grid;
+		return grid.getWallVersion() == this.wallVersion
+				&& grid.getSizeX() == current.getSizeX() && grid.getSizeY() == current.getSizeY();
+	}
+
+	/**
+	 * @param grid
+	 */
+	private void changeGrid(Grid grid) {
+		if (this.grid == null || grid.getWallVersion() != this.wallVersion
+				|| grid.getSizeX() != this.grid.getSizeX() || grid.getSizeY() != this.grid.getSizeY()) {
+			this.fields.clear();
+			this.cells = 0;
+			this.lastField = null;
+		}
+		this.grid = grid;
+		this.wallVersion = grid.getWallVersion();
+	}
+
+	/**
+	 * @return hasWalls
+	 * False if the distances are the Manhattan distances
+	 */
+	public boolean hasWalls() {
+		return this.grid.getWallCount() > 0;
+	}
+
+	/** Returns the field of the distances from a source, computing it if it is not in the cache
+	 * @param source
+	 * @return field
+	 */
+	public synchronized DistanceField getField(Coordinates source) {
+		// The fields grow as they are queried : the growth of the last field given is counted now
+		if (this.lastField != null) {
+			this.cells += this.lastField.getAllocatedCells() - this.lastFieldCells;
+		}
+		Long key = Grid.key(source.x, source.y);
+		DistanceField field = this.fields.get(key);
+		if (field == null) {
+			field = new DistanceField(this.grid, source);
+			this.fields.put(key, field);
+			this.cells += field.getAllocatedCells();
+		}
+		this.lastField = field;
+		this.lastFieldCells = field.getAllocatedCells();
+		this.evict(field);
+		return field;
+	}
+
+	/** Evicts the least recently used fields until the cache holds at most maxCells distances
+	 * @param kept
+	 * The field being used, never evicted
+	 */
+	private void evict(DistanceField kept) {
+		Iterator<Map.Entry<Long, DistanceField>> entries = this.fields.entrySet().iterator();
+		while (this.cells > this.maxCells && entries.hasNext()) {
+			DistanceField field = entries.next().getValue();
+			if (field != kept) {
+				this.cells -= field.getAllocatedCells();
+				entries.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return distance
+	 * The length of the shortest path, DistanceField.UNREACHABLE if there is none
+	 */
+	public int distance(Coordinates from, Coordinates to) {
+		if (!this.hasWalls()) {
+			return from.distance(to);
+		}
+		return this.getField(from).get(to.x, to.y);
+	}
+
+	/** Returns the first move of a shortest path. Without walls, the path goes along x, then along y
+	 * @param from
+	 * @param to
+	 * @return direction
+	 * null if from and to are the same case, or if there is no path
+	 */
+	public Direction nextDirection(Coordinates from, Coordinates to) {
+		if (!this.hasWalls()) {
+			if (to.x != from.x) {
+				return to.x < from.x ? Direction.UP : Direction.DOWN;
+			} else if (to.y != from.y) {
+				return to.y < from.y ? Direction.LEFT : Direction.RIGHT;
+			}
+			return null;
+		}
+		// Goes down the distances to the destination, which are computed once for all the moves towards it
+		DistanceField field = this.getField(to);
+		int distance = field.get(from.x, from.y);
+		if (distance == 0 || distance == DistanceField.UNREACHABLE) {
+			return null;
+		}
+		if (field.get(from.x - 1, from.y) == distance - 1) {
+			return Direction.UP;
+		} else if (field.get(from.x + 1, from.y) == distance - 1) {
+			return Direction.DOWN;
+		} else if (field.get(from.x, from.y - 1) == distance - 1) {
+			return Direction.LEFT;
+		}
+		return Direction.RIGHT;
+	}
+
+}
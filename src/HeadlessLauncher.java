@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.Executor;
+
+import Agents.Fleet;
+import Agents.Manor;
+import Agents.Robot;
+import Monitoring.Metrics;
+import Recording.EventLogWriter;
+import Recording.GridStreamPublisher;
+import Simulation.Simulator;
+
+public class HeadlessLauncher {
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		// Size of the manor and simulated duration (in days) can be given as arguments
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		long days = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		// Wall time given to the improvement of each path, none by default to keep the simulation fast
+		long planningBudget = args.length > 2 ? Long.parseLong(args[2]) : 0;
+		int nbRobots = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		// Side of the rooms the manor is divided in by walls, no walls by default
+		int roomSize = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+		// Creation of the Manor, without any GUI
+		Manor manor = new Manor(size, size);
+		// Its modifications can be recorded, to be replayed with ReplayLauncher ("-" to record nothing),
+		// starting with its walls
+		EventLogWriter log = null;
+		if (args.length > 4 && !args[4].equals("-")) {
+			log = new EventLogWriter(Paths.get(args[4]), size, size);
+			manor.setListener(log);
+		}
+		if (roomSize > 1) {
+			manor.buildRooms(roomSize);
+		}
+		// The manor can be drawn by another process (see ViewerLauncher), connected to this port (0 for any free port)
+		GridStreamPublisher stream = null;
+		if (args.length > 6) {
+			stream = new GridStreamPublisher(manor::getRoomsCopy, Integer.parseInt(args[6]));
+			stream.setStats(manor::getRefreshRate, manor::getLostJewels);
+			stream.start();
+			System.out.println("Viewer port : " + stream.getPort());
+		}
+		Metrics.get().setRooms(manor.getRooms());
+		Metrics.get().register();
+		Simulator simulator = new Simulator();
+		simulator.schedule(manor, 0);
+		if (nbRobots > 1) {
+			// A fleet of robots, spread over the diagonal of the manor
+			Fleet fleet = new Fleet(manor);
+			int notPlaced = 0;
+			for (int i = 0; i < nbRobots; i++) {
+				int position = (int) ((long) size * i / nbRobots);
+				// The robots sharing a case of the diagonal (or put on a wall) take the next free case
+				Robot robot = fleet.addRobotNear(position, position);
+				if (robot == null) {
+					notPlaced++;
+				} else {
+					robot.setPlanningBudget(planningBudget);
+				}
+			}
+			if (notPlaced > 0) {
+				System.out.println(" # " + notPlaced + " robot(s) could not be placed, the manor has no free case left");
+			}
+			simulator.schedule(fleet, 0);
+		} else {
+			// Creation of a new robot, computing its paths in the simulation thread
+			Robot robot = new Robot(manor);
+			robot.setPlanner(new Executor() {
+				@Override
+				public void execute(Runnable task) {
+					task.run();
+				}
+			});
+			robot.setPlanningBudget(planningBudget);
+			int position = manor.getRooms().isWall(size / 2, size / 2) ? size / 2 + 1 : size / 2;
+			manor.setRobotPosition(position, position);
+			simulator.schedule(robot, 0);
+		}
+		long start = System.nanoTime();
+		simulator.runUntil(days * 24 * 3600 * 1000);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println("Simulated time : " + days + " day(s)");
+		System.out.println("Steps : " + simulator.getSteps() + " in " + seconds + " s");
+		System.out.println("Steps per second : " + (long) (simulator.getSteps() / seconds));
+		System.out.println(Metrics.get());
+		if (stream != null) {
+			System.out.println("Frames sent to the viewers : " + stream.getFrameCount());
+			stream.close();
+		}
+		if (log != null) {
+			manor.setListener(null);
+			log.close();
+			System.out.println("Events recorded : " + log.getEventCount());
+			System.out.println("Objectives left : " + manor.getRooms().getObjectiveCount());
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+package Monitoring;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/* Distribution of the durations of an operation, in buckets of powers of 2 nanoseconds.
+ * Recording is lock-free and does not allocate : it can be done on every iteration of the robots
+ */
+public class LatencyHistogram {
+
+	// Bucket b holds the durations in [2^(b-1), 2^b[ nanoseconds, bucket 0 the durations of 0
+	private static final int NB_BUCKETS = 64;
+
+	private LongAdder[] buckets;
+	private LongAdder count;
+	private LongAdder total;
+	private LongAccumulator max;
+
+	public LatencyHistogram() {
+		this.buckets = new LongAdder[NB_BUCKETS];
+		for (int b = 0; b < NB_BUCKETS; b++) {
+			this.buckets[b] = new LongAdder();
+		}
+		this.count = new LongAdder();
+		this.total = new LongAdder();
+		this.max = new LongAccumulator(new LongBinaryOperator() {
+			@Override
+			public long applyAsLong(long left, long right) {
+				return Math.max(left, right);
+			}
+		}, 0);
+	}
+
+	/**
+	 * @param nanos
+	 * The duration of one operation, in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		this.buckets[NB_BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+		this.count.increment();
+		this.total.add(nanos);
+		this.max.accumulate(nanos);
+	}
+
+	/** Empties the histogram
+	 */
+	public void reset() {
+		for (int b = 0; b < NB_BUCKETS; b++) {
+			this.buckets[b].reset();
+		}
+		this.count.reset();
+		this.total.reset();
+		this.max.reset();
+	}
+
+	/** The statistics are computed from the buckets : a percentile is known within a factor of 2.
+	 * Operations recorded meanwhile may be partly counted
+	 * @return statistics
+	 */
+	public LatencyStatistics getStatistics() {
+		long[] counts = new long[NB_BUCKETS];
+		long n = 0;
+		for (int b = 0; b < NB_BUCKETS; b++) {
+			counts[b] = this.buckets[b].sum();
+			n += counts[b];
+		}
+		double mean = n == 0 ? 0 : (double) this.total.sum() / n / 1000;
+		return new LatencyStatistics(n, mean, percentile(counts, n, 0.5), percentile(counts, n, 0.9),
+				percentile(counts, n, 0.99), this.max.get() / 1000.0);
+	}
+
+	/**
+	 * @param counts
+	 * @param n
+	 * @param p
+	 * @return percentile
+	 * The upper bound of the bucket holding the p-th percentile, in microseconds
+	 */
+	private static double percentile(long[] counts, long n, double p) {
+		if (n == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(p * n);
+		long seen = 0;
+		for (int b = 0; b < NB_BUCKETS; b++) {
+			seen += counts[b];
+			if (seen >= rank) {
+				return b == 0 ? 0 : Math.pow(2, b) / 1000;
+			}
+		}
+		return Math.pow(2, NB_BUCKETS - 1) / 1000;
+	}
+
+}
@@ -0,0 +1,82 @@
+package Monitoring;
+import java.beans.ConstructorProperties;
+
+/* Summary of a latency histogram, in microseconds. Shown as a composite attribute over JMX
+ */
+public class LatencyStatistics {
+
+	private long count;
+	private double mean;
+	private double p50;
+	private double p90;
+	private double p99;
+	private double max;
+
+	/**
+	 * @param count
+	 * @param mean
+	 * @param p50
+	 * @param p90
+	 * @param p99
+	 * @param max
+	 */
+	@ConstructorProperties({"count", "mean", "p50", "p90", "p99", "max"})
+	public LatencyStatistics(long count, double mean, double p50, double p90, double p99, double max) {
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.max = max;
+	}
+
+	/**
+	 * @return count
+	 * The number of operations recorded
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return mean
+	 */
+	public double getMean() {
+		return this.mean;
+	}
+
+	/**
+	 * @return p50
+	 */
+	public double getP50() {
+		return this.p50;
+	}
+
+	/**
+	 * @return p90
+	 */
+	public double getP90() {
+		return this.p90;
+	}
+
+	/**
+	 * @return p99
+	 */
+	public double getP99() {
+		return this.p99;
+	}
+
+	/**
+	 * @return max
+	 */
+	public double getMax() {
+		return this.max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.1fus p50<=%.1fus p90<=%.1fus p99<=%.1fus max=%.1fus",
+				this.count, this.mean, this.p50, this.p90, this.p99, this.max);
+	}
+
+}
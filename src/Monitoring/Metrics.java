@@ -0,0 +1,312 @@
+package Monitoring;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import Grid.Grid;
+
+/* Metrics of the simulation, shared by the environment, the robots and the path computers,
+ * and published over JMX once registered. The recording methods only use lock-free counters,
+ * and do nothing while the metrics are disabled
+ */
+public class Metrics implements MetricsMXBean {
+
+	public static final String NAME = "VacuumCleanerAgent:type=Metrics";
+
+	private static final Metrics INSTANCE = new Metrics();
+
+	// Returned by startTimer when the metrics are disabled
+	private static final long NO_TIMER = Long.MIN_VALUE;
+
+	private volatile boolean enabled;
+	private LatencyHistogram observeLatency;
+	private LatencyHistogram planLatency;
+	private LatencyHistogram chooseActionLatency;
+	// The notifications only mark the frame of the GUI dirty, the frames are drawn later by the Event Dispatch Thread
+	private LatencyHistogram notifyGUILatency;
+	private LatencyHistogram renderLatency;
+	private LongAdder moves;
+	private LongAdder sucks;
+	private LongAdder picks;
+	private LongAdder lostJewels;
+	// Lengths of the greedy tours planned, and how much their improvement has shortened them
+	private LongAdder greedyLength;
+	private LongAdder savedLength;
+	// Sources of the gauges, read when the gauges are
+	private volatile ThreadPoolExecutor planningPool;
+	private volatile Grid rooms;
+	private boolean registered;
+
+	private Metrics() {
+		this.enabled = true;
+		this.observeLatency = new LatencyHistogram();
+		this.planLatency = new LatencyHistogram();
+		this.chooseActionLatency = new LatencyHistogram();
+		this.notifyGUILatency = new LatencyHistogram();
+		this.renderLatency = new LatencyHistogram();
+		this.moves = new LongAdder();
+		this.sucks = new LongAdder();
+		this.picks = new LongAdder();
+		this.lostJewels = new LongAdder();
+		this.greedyLength = new LongAdder();
+		this.savedLength = new LongAdder();
+	}
+
+	/**
+	 * @return metrics
+	 * The metrics shared by the whole application
+	 */
+	public static Metrics get() {
+		return INSTANCE;
+	}
+
+	/** Publishes the metrics in the platform MBean server, if they are not already
+	 */
+	public synchronized void register() {
+		if (this.registered) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(this, new ObjectName(NAME));
+			this.registered = true;
+		} catch (JMException e) {
+			System.out.println(" # Unable to register the metrics : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @param planningPool
+	 * The pool computing the paths, whose backlog is published
+	 */
+	public void setPlanningPool(ThreadPoolExecutor planningPool) {
+		this.planningPool = planningPool;
+	}
+
+	/**
+	 * @param rooms
+	 * The map of the environment, whose number of objectives is published
+	 */
+	public void setRooms(Grid rooms) {
+		this.rooms = rooms;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return start
+	 * The start of the timed operation, to give to one of the record methods
+	 */
+	public long startTimer() {
+		return this.enabled ? System.nanoTime() : NO_TIMER;
+	}
+
+	/**
+	 * @param histogram
+	 * @param start
+	 */
+	private static void recordSince(LatencyHistogram histogram, long start) {
+		if (start != NO_TIMER) {
+			histogram.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @param start
+	 */
+	public void recordObserve(long start) {
+		recordSince(this.observeLatency, start);
+	}
+
+	/**
+	 * @param start
+	 */
+	public void recordPlan(long start) {
+		recordSince(this.planLatency, start);
+	}
+
+	/**
+	 * @param start
+	 */
+	public void recordChooseAction(long start) {
+		recordSince(this.chooseActionLatency, start);
+	}
+
+	/**
+	 * @param start
+	 */
+	public void recordNotifyGUI(long start) {
+		recordSince(this.notifyGUILatency, start);
+	}
+
+	/**
+	 * @param start
+	 */
+	public void recordRender(long start) {
+		recordSince(this.renderLatency, start);
+	}
+
+	/** Counts a move of a robot
+	 */
+	public void countMove() {
+		if (this.enabled) {
+			this.moves.increment();
+		}
+	}
+
+	/** Counts a case sucked up by a robot
+	 */
+	public void countSuck() {
+		if (this.enabled) {
+			this.sucks.increment();
+		}
+	}
+
+	/** Counts a jewel picked by a robot
+	 */
+	public void countPick() {
+		if (this.enabled) {
+			this.picks.increment();
+		}
+	}
+
+	/** Counts a jewel sucked up by a robot
+	 */
+	public void countLostJewel() {
+		if (this.enabled) {
+			this.lostJewels.increment();
+		}
+	}
+
+	/** Counts a planned tour
+	 * @param greedyLength
+	 * The length of the tour built by the greedy algorithm
+	 * @param savedLength
+	 * How much its improvement has shortened it
+	 */
+	public void recordTour(int greedyLength, int savedLength) {
+		if (this.enabled) {
+			this.greedyLength.add(greedyLength);
+			this.savedLength.add(savedLength);
+		}
+	}
+
+	@Override
+	public LatencyStatistics getObserveLatency() {
+		return this.observeLatency.getStatistics();
+	}
+
+	@Override
+	public LatencyStatistics getPlanLatency() {
+		return this.planLatency.getStatistics();
+	}
+
+	@Override
+	public LatencyStatistics getChooseActionLatency() {
+		return this.chooseActionLatency.getStatistics();
+	}
+
+	@Override
+	public LatencyStatistics getNotifyGUILatency() {
+		return this.notifyGUILatency.getStatistics();
+	}
+
+	@Override
+	public LatencyStatistics getRenderLatency() {
+		return this.renderLatency.getStatistics();
+	}
+
+	@Override
+	public long getActions() {
+		return this.moves.sum() + this.sucks.sum() + this.picks.sum();
+	}
+
+	@Override
+	public long getMoves() {
+		return this.moves.sum();
+	}
+
+	@Override
+	public long getSucks() {
+		return this.sucks.sum();
+	}
+
+	@Override
+	public long getPicks() {
+		return this.picks.sum();
+	}
+
+	@Override
+	public long getLostJewels() {
+		return this.lostJewels.sum();
+	}
+
+	@Override
+	public long getGreedyTourLength() {
+		return this.greedyLength.sum();
+	}
+
+	@Override
+	public long getSavedTourLength() {
+		return this.savedLength.sum();
+	}
+
+	@Override
+	public int getPlanningQueueSize() {
+		ThreadPoolExecutor pool = this.planningPool;
+		return pool != null ? pool.getQueue().size() : 0;
+	}
+
+	@Override
+	public int getActivePlanners() {
+		ThreadPoolExecutor pool = this.planningPool;
+		return pool != null ? pool.getActiveCount() : 0;
+	}
+
+	@Override
+	public int getObjectiveBacklog() {
+		Grid rooms = this.rooms;
+		return rooms != null ? rooms.getObjectiveCount() : 0;
+	}
+
+	@Override
+	public void reset() {
+		this.observeLatency.reset();
+		this.planLatency.reset();
+		this.chooseActionLatency.reset();
+		this.notifyGUILatency.reset();
+		this.renderLatency.reset();
+		this.moves.reset();
+		this.sucks.reset();
+		this.picks.reset();
+		this.lostJewels.reset();
+		this.greedyLength.reset();
+		this.savedLength.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "Observe : " + this.getObserveLatency()
+				+ "\nPlan : " + this.getPlanLatency()
+				+ "\nChoose action : " + this.getChooseActionLatency()
+				+ "\nNotify GUI : " + this.getNotifyGUILatency()
+				+ "\nRender : " + this.getRenderLatency()
+				+ "\nActions : " + this.getActions() + " (moves " + this.getMoves() + ", sucks " + this.getSucks()
+				+ ", picks " + this.getPicks() + "), lost jewels : " + this.getLostJewels()
+				+ "\nTours : greedy length " + this.getGreedyTourLength() + ", saved by the improvement " + this.getSavedTourLength()
+				+ "\nObjectives left : " + this.getObjectiveBacklog() + ", planning queue : " + this.getPlanningQueueSize();
+	}
+
+}
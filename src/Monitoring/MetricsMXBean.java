@@ -0,0 +1,45 @@
+package Monitoring;
+
+/* The metrics published over JMX, under the name "VacuumCleanerAgent:type=Metrics".
+ * The latencies are in microseconds
+ */
+public interface MetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	LatencyStatistics getObserveLatency();
+
+	LatencyStatistics getPlanLatency();
+
+	LatencyStatistics getChooseActionLatency();
+
+	LatencyStatistics getNotifyGUILatency();
+
+	// Time to draw a frame of the GUI, on the Event Dispatch Thread
+	LatencyStatistics getRenderLatency();
+
+	long getActions();
+
+	long getMoves();
+
+	long getSucks();
+
+	long getPicks();
+
+	long getLostJewels();
+
+	long getGreedyTourLength();
+
+	long getSavedTourLength();
+
+	int getPlanningQueueSize();
+
+	int getActivePlanners();
+
+	int getObjectiveBacklog();
+
+	void reset();
+
+}
@@ -0,0 +1,34 @@
+package Recording;
+
+/* Format of the event logs : a header (magic number, version, size of the manor),
+ * then one record per modification of the manor, made of its type and its arguments.
+ * The integers are big-endian. A record type 0 (or the end of the file) ends the log
+ */
+public class EventLog {
+
+	public static final int MAGIC = 0x5643454C; // "VCEL"
+	// The logs of the version 1 have no WALL record, they are still read
+	public static final int VERSION = 2;
+	// Magic number, version, sizeX, sizeY
+	public static final int HEADER_SIZE = 16;
+
+	public static final byte END = 0;
+	// Followed by x and y (ints)
+	public static final byte DUST = 1;
+	public static final byte JEWEL = 2;
+	public static final byte SUCK = 3;
+	public static final byte PICK = 4;
+	// Followed by the robot id (short) and the direction (byte)
+	public static final byte MOVE = 5;
+	// Followed by the robot id (short), x and y (ints)
+	public static final byte PLACE = 6;
+	// Followed by x and y (ints), and 1 if a wall is built, 0 if it is removed (byte)
+	public static final byte WALL = 7;
+
+	// Size of the longest record
+	public static final int MAX_RECORD_SIZE = 11;
+
+	private EventLog() {
+	}
+
+}
@@ -0,0 +1,150 @@
+package Recording;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import Agents.Manor;
+import Grid.Direction;
+
+/* Reads an event log (see EventLog) through memory-mapped regions of the file,
+ * and applies its events to a manor
+ */
+public class EventLogReader implements Closeable {
+
+	private static final int REGION_SIZE = 1 << 24;
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	private FileChannel channel;
+	private int sizeX;
+	private int sizeY;
+
+	/** Opens the log and reads its header
+	 * @param file
+	 * @throws IOException
+	 * If the file is not an event log, or not of a supported version
+	 */
+	public EventLogReader(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			MappedByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, EventLog.HEADER_SIZE);
+			if (header.getInt() != EventLog.MAGIC) {
+				throw new IOException(file + " is not an event log");
+			}
+			int version = header.getInt();
+			if (version < 1 || version > EventLog.VERSION) {
+				throw new IOException("Unsupported version of event log : " + version);
+			}
+			this.sizeX = header.getInt();
+			this.sizeY = header.getInt();
+		} catch (IOException | RuntimeException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return sizeX
+	 * The size of the recorded manor
+	 */
+	public int getSizeX() {
+		return this.sizeX;
+	}
+
+	/**
+	 * @return sizeY
+	 */
+	public int getSizeY() {
+		return this.sizeY;
+	}
+
+	/** Applies all the events of the log to a manor, as fast as possible.
+	 * Applied to a new manor of the size of the log, the events rebuild the recorded manor
+	 * @param manor
+	 * @return nbEvents
+	 * The number of events applied
+	 * @throws IOException
+	 * If the log is corrupted
+	 */
+	public long replay(Manor manor) throws IOException {
+		long fileSize = this.channel.size();
+		long offset = EventLog.HEADER_SIZE;
+		long nbEvents = 0;
+		while (offset < fileSize) {
+			MappedByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(REGION_SIZE, fileSize - offset));
+			// A record is only read when it is entirely in the region, or when the region ends the file
+			boolean lastRegion = offset + buffer.capacity() == fileSize;
+			while (buffer.hasRemaining() && (lastRegion || buffer.remaining() >= EventLog.MAX_RECORD_SIZE)) {
+				byte type = buffer.get();
+				if (type == EventLog.END) {
+					return nbEvents;
+				}
+				try {
+					this.apply(manor, type, buffer);
+				} catch (BufferUnderflowException e) {
+					throw new IOException("Truncated event at offset " + (offset + buffer.position()));
+				}
+				nbEvents++;
+			}
+			offset += buffer.position();
+		}
+		return nbEvents;
+	}
+
+	/**
+	 * @param manor
+	 * @param type
+	 * @param buffer
+	 * Positioned on the arguments of the event
+	 * @throws IOException
+	 */
+	private void apply(Manor manor, byte type, MappedByteBuffer buffer) throws IOException {
+		switch (type) {
+		case EventLog.DUST: manor.addDust(buffer.getInt(), buffer.getInt());
+			break;
+		case EventLog.JEWEL: manor.addJewel(buffer.getInt(), buffer.getInt());
+			break;
+		case EventLog.SUCK: manor.suckUp(buffer.getInt(), buffer.getInt());
+			break;
+		case EventLog.PICK: manor.pickJewel(buffer.getInt(), buffer.getInt());
+			break;
+		case EventLog.MOVE: {
+			int id = buffer.getShort();
+			int dir = buffer.get();
+			if (dir < 0 || dir >= DIRECTIONS.length) {
+				throw new IOException("Unknown direction " + dir + " at offset " + buffer.position());
+			}
+			manor.moveRobot(id, DIRECTIONS[dir]);
+			break;
+		}
+		case EventLog.PLACE: {
+			int id = buffer.getShort();
+			int x = buffer.getInt();
+			int y = buffer.getInt();
+			// The robots are added in the order of their ids
+			if (id == manor.getRobotCount()) {
+				manor.addRobot(x, y);
+			} else {
+				manor.setRobotPosition(id, x, y);
+			}
+			break;
+		}
+		case EventLog.WALL: {
+			int x = buffer.getInt();
+			int y = buffer.getInt();
+			manor.setWall(x, y, buffer.get() != 0);
+			break;
+		}
+		default: throw new IOException("Unknown event type " + type + " at offset " + buffer.position());
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+}
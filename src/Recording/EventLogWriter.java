@@ -0,0 +1,149 @@
+package Recording;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import Agents.ManorListener;
+import Grid.Direction;
+
+/* Appends the modifications of a manor to an event log (see EventLog), through a memory-mapped
+ * region of the file : recording an event is a few writes in memory. The file grows by regions,
+ * and is cut to the length of the log when the writer is closed
+ */
+public class EventLogWriter implements ManorListener, Closeable {
+
+	// Size of the regions of the file mapped one after the other
+	private static final int REGION_SIZE = 1 << 20;
+
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	// Position of the current region in the file
+	private long regionStart;
+	private long nbEvents;
+
+	/** Creates the log, replacing the file if it exists
+	 * @param file
+	 * @param sizeX
+	 * @param sizeY
+	 * The size of the recorded manor
+	 * @throws IOException
+	 */
+	public EventLogWriter(Path file, int sizeX, int sizeY) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.regionStart = 0;
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+		this.buffer.putInt(EventLog.MAGIC);
+		this.buffer.putInt(EventLog.VERSION);
+		this.buffer.putInt(sizeX);
+		this.buffer.putInt(sizeY);
+		this.nbEvents = 0;
+	}
+
+	/**
+	 * @return nbEvents
+	 * The number of events recorded
+	 */
+	public synchronized long getEventCount() {
+		return this.nbEvents;
+	}
+
+	/** Maps the next region of the file if the current one cannot hold another record.
+	 * A record never spans two regions
+	 */
+	private void reserve() {
+		if (this.buffer == null) {
+			throw new IllegalStateException("The event log is closed");
+		}
+		if (this.buffer.remaining() < EventLog.MAX_RECORD_SIZE + 1) {
+			this.regionStart += this.buffer.position();
+			try {
+				this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, this.regionStart, REGION_SIZE);
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to extend the event log", e);
+			}
+		}
+		this.nbEvents++;
+	}
+
+	/**
+	 * @param type
+	 * @param x
+	 * @param y
+	 */
+	private synchronized void append(byte type, int x, int y) {
+		this.reserve();
+		this.buffer.put(type);
+		this.buffer.putInt(x);
+		this.buffer.putInt(y);
+	}
+
+	@Override
+	public void dustGenerated(int x, int y) {
+		this.append(EventLog.DUST, x, y);
+	}
+
+	@Override
+	public void jewelGenerated(int x, int y) {
+		this.append(EventLog.JEWEL, x, y);
+	}
+
+	@Override
+	public synchronized void robotPlaced(int id, int x, int y) {
+		this.reserve();
+		this.buffer.put(EventLog.PLACE);
+		this.buffer.putShort((short) id);
+		this.buffer.putInt(x);
+		this.buffer.putInt(y);
+	}
+
+	@Override
+	public synchronized void robotMoved(int id, Direction dir) {
+		this.reserve();
+		this.buffer.put(EventLog.MOVE);
+		this.buffer.putShort((short) id);
+		this.buffer.put((byte) dir.ordinal());
+	}
+
+	@Override
+	public void suckedUp(int x, int y) {
+		this.append(EventLog.SUCK, x, y);
+	}
+
+	@Override
+	public void jewelPicked(int x, int y) {
+		this.append(EventLog.PICK, x, y);
+	}
+
+	@Override
+	public synchronized void wallChanged(int x, int y, boolean wall) {
+		this.reserve();
+		this.buffer.put(EventLog.WALL);
+		this.buffer.putInt(x);
+		this.buffer.putInt(y);
+		this.buffer.put((byte) (wall ? 1 : 0));
+	}
+
+	/** Writes the log to the disk, and cuts the file after its last record
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.buffer == null) {
+			return;
+		}
+		long length = this.regionStart + this.buffer.position();
+		this.buffer.force();
+		this.buffer = null;
+		try {
+			// May fail while the region is still mapped on some systems, the END record is then kept
+			this.channel.truncate(length + 1);
+		} catch (IOException e) {
+		} finally {
+			this.channel.close();
+		}
+	}
+
+}
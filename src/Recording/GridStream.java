@@ -0,0 +1,32 @@
+package Recording;
+
+/* Format of the grid streams sent to the viewers : a header (magic number, version, size of the grid,
+ * tile shift s), then frames made of their type and their content. A keyframe gives the whole grid,
+ * a delta frame the cases modified since the previous frame, a stats frame the robot info of the
+ * simulation. The cases are grouped by tiles of 2^s x 2^s cases, numbered in row order like those of
+ * Grid : a case is given by its tile and its offset in the tile, ((x & m) << s) | (y & m) with
+ * m = 2^s - 1. The integers are big-endian
+ */
+public class GridStream {
+
+	public static final int MAGIC = 0x56434753; // "VCGS"
+	// The streams of the version 1 have no STATS frame, they are still read
+	public static final int VERSION = 2;
+	// Magic number, version, sizeX, sizeY, tileShift
+	public static final int HEADER_SIZE = 20;
+
+	// Followed by the number of non empty tiles (int), then for each of them its index (int)
+	// and its packed cases (2^s x 2^s ints). The tiles not given are empty
+	public static final byte KEYFRAME = 1;
+	// Followed by the number of modified tiles (int), then for each of them its index (int),
+	// the number of modified cases (unsigned short), and for each of them its offset (short) and packed value (int)
+	public static final byte DELTA = 2;
+	// Followed by the refresh rate of the robots (int) and the number of lost jewels (long).
+	// Sent after each keyframe, and after the delta frames when they have changed
+	public static final byte STATS = 3;
+	public static final int STATS_SIZE = 13;
+
+	private GridStream() {
+	}
+
+}
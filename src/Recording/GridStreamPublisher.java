@@ -0,0 +1,443 @@
+package Recording;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import Grid.Grid;
+import Grid.GridListener;
+
+/* Publishes the state of a grid to the viewers connected on a local port (see GridStream), so that it can be
+ * drawn by another process. Its own thread takes at most maxFps snapshots per second, and sends the cases
+ * which differ from the previous snapshot (only the tiles modified in between are compared, see Grid.compare),
+ * or a keyframe to the new viewers and periodically to all of them. The simulation threads never wait
+ * for the viewers : a viewer which has not read the previous frame yet misses the next ones,
+ * then gets a keyframe. The robot info of the simulation, if given, follows each keyframe and the delta
+ * frames during which it has changed. Nothing is done while no viewer is connected
+ */
+public class GridStreamPublisher implements Closeable {
+
+	/** Default highest number of frames sent per second */
+	public static final int DEFAULT_MAX_FPS = 30;
+	/** Default time between two keyframes sent to all the viewers (in ms) */
+	public static final long DEFAULT_KEYFRAME_PERIOD = 10000;
+
+	private Supplier<Grid> snapshots;
+	private ServerSocketChannel server;
+	private List<Client> clients;
+	private Thread thread;
+	private volatile boolean running;
+	private volatile long framePeriod;
+	private volatile long keyframePeriod;
+	// Snapshot sent in the last frame, null while no viewer is connected
+	private Grid previous;
+	private long lastKeyframe;
+	private long nbFrames;
+	// Robot info sent to the viewers, null if it is not given
+	private IntSupplier refreshRate;
+	private LongSupplier lostJewels;
+	// Robot info of the last frame
+	private int sentRefreshRate = -1;
+	private long sentLostJewels = -1;
+
+	/** A connected viewer */
+	private static class Client {
+
+		private SocketChannel channel;
+		// Rest of the frame being sent, null if it has been sent entirely
+		private ByteBuffer pending;
+		// True once the header has been given to the viewer
+		private boolean started;
+		// True if the viewer has missed a frame, and needs a keyframe
+		private boolean missed;
+
+		/**
+		 * @param channel
+		 */
+		private Client(SocketChannel channel) {
+			this.channel = channel;
+			this.missed = true;
+		}
+
+		/** Sends what the socket accepts of the rest of the current frame, without waiting
+		 * @return flushed
+		 * True if the current frame has been sent entirely
+		 * @throws IOException
+		 */
+		private boolean flush() throws IOException {
+			if (this.pending != null) {
+				this.channel.write(this.pending);
+				if (this.pending.hasRemaining()) {
+					return false;
+				}
+				this.pending = null;
+			}
+			return true;
+		}
+
+		/**
+		 * @param frame
+		 * Shared with the other viewers, it is not modified
+		 * @throws IOException
+		 */
+		private void send(ByteBuffer frame) throws IOException {
+			this.pending = frame.duplicate();
+			this.flush();
+		}
+
+	}
+
+	/** Groups the modified cases by tiles, given in order by Grid.compare
+	 */
+	private static class DeltaEncoder implements GridListener {
+
+		private ByteBuffer buffer;
+		private int tileShift;
+		private int tileMask;
+		private int tilesY;
+		private int nbTiles;
+		private int tile;
+		// Position of the number of cases of the current tile, written when the tile is finished
+		private int countPosition;
+		private int nbCases;
+
+		/**
+		 * @param grid
+		 */
+		private DeltaEncoder(Grid grid) {
+			this.buffer = ByteBuffer.allocate(1 << 16);
+			this.tileShift = grid.getTileShift();
+			this.tileMask = (1 << this.tileShift) - 1;
+			this.tilesY = grid.getTilesY();
+			this.buffer.put(GridStream.DELTA);
+			this.buffer.putInt(0);
+			this.tile = -1;
+		}
+
+		@Override
+		public void cellChanged(int x, int y, int oldCell, int newCell) {
+			int t = (x >> this.tileShift) * this.tilesY + (y >> this.tileShift);
+			if (this.buffer.remaining() < 14) {
+				ByteBuffer larger = ByteBuffer.allocate(this.buffer.capacity() * 2);
+				this.buffer.flip();
+				larger.put(this.buffer);
+				this.buffer = larger;
+			}
+			if (t != this.tile) {
+				this.finishTile();
+				this.tile = t;
+				this.nbTiles++;
+				this.buffer.putInt(t);
+				this.countPosition = this.buffer.position();
+				this.buffer.putShort((short) 0);
+			}
+			this.buffer.putShort((short) (((x & this.tileMask) << this.tileShift) | (y & this.tileMask)));
+			this.buffer.putInt(newCell);
+			this.nbCases++;
+		}
+
+		/** Writes the number of cases of the current tile
+		 */
+		private void finishTile() {
+			if (this.tile >= 0) {
+				this.buffer.putShort(this.countPosition, (short) this.nbCases);
+			}
+			this.nbCases = 0;
+		}
+
+		/**
+		 * @return frame
+		 * The delta frame, null if no case has been modified
+		 */
+		private ByteBuffer getFrame() {
+			if (this.nbTiles == 0) {
+				return null;
+			}
+			this.finishTile();
+			this.buffer.putInt(1, this.nbTiles);
+			this.buffer.flip();
+			return this.buffer;
+		}
+
+	}
+
+	/** Opens the port, the frames are sent once the publisher is started
+	 * @param snapshots
+	 * Gives consistent copies of the grid, which no thread modifies anymore (see Manor.getRoomsCopy)
+	 * @param port
+	 * Port of the loopback interface the viewers connect to, 0 for any free port
+	 * @throws IOException
+	 */
+	public GridStreamPublisher(Supplier<Grid> snapshots, int port) throws IOException {
+		this.snapshots = snapshots;
+		this.server = ServerSocketChannel.open();
+		this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		this.server.configureBlocking(false);
+		this.clients = new ArrayList<Client>();
+		this.framePeriod = 1000000000L / DEFAULT_MAX_FPS;
+		this.keyframePeriod = DEFAULT_KEYFRAME_PERIOD * 1000000L;
+	}
+
+	/**
+	 * @return port
+	 * The port the viewers connect to
+	 */
+	public int getPort() {
+		return ((InetSocketAddress) this.server.socket().getLocalSocketAddress()).getPort();
+	}
+
+	/**
+	 * @param maxFps
+	 * Highest number of frames sent per second
+	 */
+	public void setMaxFps(int maxFps) {
+		this.framePeriod = 1000000000L / Math.max(maxFps, 1);
+	}
+
+	/**
+	 * @param keyframePeriod
+	 * Time between two keyframes sent to all the viewers (in ms)
+	 */
+	public void setKeyframePeriod(long keyframePeriod) {
+		this.keyframePeriod = keyframePeriod * 1000000L;
+	}
+
+	/** Sends the robot info of the simulation with the frames, so that the viewers can show it
+	 * @param refreshRate
+	 * Gives the refresh rate of the robots (see Manor.getRefreshRate)
+	 * @param lostJewels
+	 * Gives the number of lost jewels (see Manor.getLostJewels)
+	 */
+	public synchronized void setStats(IntSupplier refreshRate, LongSupplier lostJewels) {
+		this.refreshRate = refreshRate;
+		this.lostJewels = lostJewels;
+	}
+
+	/**
+	 * @return nbFrames
+	 * The number of frames sent, to any viewer
+	 */
+	public synchronized long getFrameCount() {
+		return this.nbFrames;
+	}
+
+	/**
+	 * @return nbClients
+	 * The number of connected viewers
+	 */
+	public synchronized int getClientCount() {
+		return this.clients.size();
+	}
+
+	/** Starts sending the frames, from a daemon thread
+	 */
+	public void start() {
+		this.running = true;
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (running) {
+					long start = System.nanoTime();
+					try {
+						publish();
+					} catch (IOException e) {
+						System.out.println(" # Unable to publish the grid : " + e.getMessage());
+					}
+					long wait = framePeriod - (System.nanoTime() - start);
+					if (wait > 0) {
+						try {
+							Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}
+		}, "grid-stream-publisher");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/** Accepts the new viewers, then sends them a frame from a new snapshot
+	 * @throws IOException
+	 */
+	private synchronized void publish() throws IOException {
+		SocketChannel channel;
+		while ((channel = this.server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			this.clients.add(new Client(channel));
+		}
+		if (this.clients.isEmpty()) {
+			// Keeping the snapshot would make the simulation duplicate every tile it modifies
+			this.previous = null;
+			return;
+		}
+		Grid snapshot = this.snapshots.get();
+		long now = System.nanoTime();
+		boolean keyframeDue = this.previous == null || now - this.lastKeyframe >= this.keyframePeriod;
+		ByteBuffer delta = null;
+		if (keyframeDue) {
+			this.lastKeyframe = now;
+		} else {
+			DeltaEncoder encoder = new DeltaEncoder(snapshot);
+			Grid.compare(this.previous, snapshot, encoder);
+			delta = encoder.getFrame();
+		}
+		ByteBuffer stats = null;
+		if (this.refreshRate != null) {
+			int refreshRate = this.refreshRate.getAsInt();
+			long lostJewels = this.lostJewels.getAsLong();
+			stats = encodeStats(refreshRate, lostJewels);
+			if (refreshRate != this.sentRefreshRate || lostJewels != this.sentLostJewels) {
+				this.sentRefreshRate = refreshRate;
+				this.sentLostJewels = lostJewels;
+				delta = concat(delta, stats);
+			}
+		}
+		ByteBuffer keyframe = null;
+		Iterator<Client> it = this.clients.iterator();
+		while (it.hasNext()) {
+			Client client = it.next();
+			try {
+				if (!client.started) {
+					// The header is sent first, then a keyframe since the viewer has missed everything before
+					client.pending = encodeHeader(snapshot);
+					client.started = true;
+				}
+				if (!client.flush()) {
+					// The viewer is still reading an older frame, it will need a keyframe
+					client.missed |= keyframeDue || delta != null;
+					continue;
+				}
+				if (keyframeDue || client.missed) {
+					if (keyframe == null) {
+						keyframe = concat(encodeKeyframe(snapshot), stats);
+					}
+					client.send(keyframe);
+					client.missed = false;
+					this.nbFrames++;
+				} else if (delta != null) {
+					client.send(delta);
+					this.nbFrames++;
+				}
+			} catch (IOException e) {
+				System.out.println(" # Viewer disconnected : " + e.getMessage());
+				client.channel.close();
+				it.remove();
+			}
+		}
+		this.previous = snapshot;
+	}
+
+	/**
+	 * @param grid
+	 * @return header
+	 */
+	private static ByteBuffer encodeHeader(Grid grid) {
+		ByteBuffer header = ByteBuffer.allocate(GridStream.HEADER_SIZE);
+		header.putInt(GridStream.MAGIC);
+		header.putInt(GridStream.VERSION);
+		header.putInt(grid.getSizeX());
+		header.putInt(grid.getSizeY());
+		header.putInt(grid.getTileShift());
+		header.flip();
+		return header;
+	}
+
+	/**
+	 * @param grid
+	 * @return keyframe
+	 * The non empty tiles of the grid
+	 */
+	private static ByteBuffer encodeKeyframe(Grid grid) {
+		int tileSize = 1 << (2 * grid.getTileShift());
+		int nbTiles = 0;
+		for (int tx = 0; tx < grid.getTilesX(); tx++) {
+			for (int ty = 0; ty < grid.getTilesY(); ty++) {
+				if (!grid.isEmptyTile(tx, ty)) {
+					nbTiles++;
+				}
+			}
+		}
+		ByteBuffer keyframe = ByteBuffer.allocate(5 + nbTiles * (4 + 4 * tileSize));
+		keyframe.put(GridStream.KEYFRAME);
+		keyframe.putInt(nbTiles);
+		for (int tx = 0; tx < grid.getTilesX(); tx++) {
+			for (int ty = 0; ty < grid.getTilesY(); ty++) {
+				if (!grid.isEmptyTile(tx, ty)) {
+					keyframe.putInt(tx * grid.getTilesY() + ty);
+					keyframe.asIntBuffer().put(grid.getTile(tx, ty));
+					keyframe.position(keyframe.position() + 4 * tileSize);
+				}
+			}
+		}
+		keyframe.flip();
+		return keyframe;
+	}
+
+	/**
+	 * @param refreshRate
+	 * @param lostJewels
+	 * @return stats
+	 */
+	private static ByteBuffer encodeStats(int refreshRate, long lostJewels) {
+		ByteBuffer stats = ByteBuffer.allocate(GridStream.STATS_SIZE);
+		stats.put(GridStream.STATS);
+		stats.putInt(refreshRate);
+		stats.putLong(lostJewels);
+		stats.flip();
+		return stats;
+	}
+
+	/**
+	 * @param first
+	 * @param second
+	 * @return frames
+	 * The two frames one after the other, or the only one which is not null
+	 */
+	private static ByteBuffer concat(ByteBuffer first, ByteBuffer second) {
+		if (first == null || second == null) {
+			return first == null ? second : first;
+		}
+		ByteBuffer frames = ByteBuffer.allocate(first.remaining() + second.remaining());
+		frames.put(first.duplicate());
+		frames.put(second.duplicate());
+		frames.flip();
+		return frames;
+	}
+
+	/** Stops sending the frames, and disconnects the viewers
+	 */
+	@Override
+	public void close() throws IOException {
+		this.running = false;
+		if (this.thread != null) {
+			this.thread.interrupt();
+			try {
+				this.thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (this) {
+			for (Client client : this.clients) {
+				client.channel.close();
+			}
+			this.clients.clear();
+			this.previous = null;
+			this.server.close();
+		}
+	}
+
+}
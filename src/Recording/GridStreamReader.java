@@ -0,0 +1,251 @@
+package Recording;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import Grid.CaseReader;
+import Grid.Grid;
+
+/* Reads the frames of a grid stream (see GridStream) sent by a GridStreamPublisher,
+ * and applies them to a grid of the published size. Each frame is read entirely before
+ * being applied, so that the cases of the grid are never read in the middle of a frame
+ */
+public class GridStreamReader implements Closeable, CaseReader {
+
+	private Socket socket;
+	private DataInputStream input;
+	private Grid grid;
+	// Geometry of the tiles of the stream, which may differ from the tiles of the grid
+	private int tileShift;
+	private int tileMask;
+	private int tilesX;
+	private int tilesY;
+	private long nbFrames;
+	// Robot info of the simulation, known once a stats frame has been read
+	private boolean stats;
+	private int refreshRate;
+	private long lostJewels;
+
+	/** Connects to the publisher and reads the header of the stream
+	 * @param host
+	 * @param port
+	 * @throws IOException
+	 * If the publisher cannot be reached, or does not send a supported grid stream
+	 */
+	public GridStreamReader(String host, int port) throws IOException {
+		this.socket = new Socket(host, port);
+		try {
+			this.socket.setTcpNoDelay(true);
+			this.input = new DataInputStream(new BufferedInputStream(this.socket.getInputStream(), 1 << 16));
+			if (this.input.readInt() != GridStream.MAGIC) {
+				throw new IOException(host + ":" + port + " does not send a grid stream");
+			}
+			int version = this.input.readInt();
+			if (version < 1 || version > GridStream.VERSION) {
+				throw new IOException("Unsupported version of grid stream : " + version);
+			}
+			int sizeX = this.input.readInt();
+			int sizeY = this.input.readInt();
+			this.tileShift = this.input.readInt();
+			if (this.tileShift < 0 || this.tileShift > Grid.MAX_TILE_SHIFT) {
+				throw new IOException("Unsupported tile shift : " + this.tileShift);
+			}
+			this.tileMask = (1 << this.tileShift) - 1;
+			this.tilesX = ((sizeX - 1) >> this.tileShift) + 1;
+			this.tilesY = ((sizeY - 1) >> this.tileShift) + 1;
+			this.grid = new Grid(sizeX, sizeY);
+		} catch (IOException | RuntimeException e) {
+			this.socket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return grid
+	 * The grid rebuilt from the stream, modified by the thread reading the frames
+	 * (the listeners of the grid are called by this thread)
+	 */
+	public Grid getGrid() {
+		return this.grid;
+	}
+
+	/** Copies the cases of a rectangle of the grid, holding whole frames only
+	 */
+	@Override
+	public synchronized void readCases(int x0, int y0, int x1, int y1, int[] cells) {
+		this.grid.readCases(x0, y0, x1, y1, cells);
+	}
+
+	/**
+	 * @return nbFrames
+	 * The number of keyframes and delta frames applied
+	 */
+	public synchronized long getFrameCount() {
+		return this.nbFrames;
+	}
+
+	/**
+	 * @return stats
+	 * True if the publisher has sent the robot info of the simulation
+	 */
+	public synchronized boolean hasStats() {
+		return this.stats;
+	}
+
+	/**
+	 * @return refreshRate
+	 * The refresh rate of the robots, given by the last stats frame
+	 */
+	public synchronized int getRefreshRate() {
+		return this.refreshRate;
+	}
+
+	/**
+	 * @return lostJewels
+	 * The number of lost jewels, given by the last stats frame
+	 */
+	public synchronized long getLostJewels() {
+		return this.lostJewels;
+	}
+
+	/** Reads the next frame and applies it to the grid, waiting for it if needed
+	 * @return read
+	 * False if the publisher has closed the stream
+	 * @throws IOException
+	 */
+	public boolean readFrame() throws IOException {
+		int type = this.input.read();
+		if (type < 0) {
+			return false;
+		}
+		try {
+			switch (type) {
+			case GridStream.KEYFRAME: this.readKeyframe();
+				break;
+			case GridStream.DELTA: this.readDelta();
+				break;
+			case GridStream.STATS: this.readStats();
+				break;
+			default: throw new IOException("Unknown frame type " + type);
+			}
+		} catch (EOFException e) {
+			throw new IOException("Truncated frame of type " + type);
+		}
+		return true;
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	private void readKeyframe() throws IOException {
+		int nbTiles = this.input.readInt();
+		int tileSize = 1 << (2 * this.tileShift);
+		int[] indexes = new int[nbTiles];
+		int[][] tiles = new int[nbTiles][];
+		byte[] bytes = new byte[4 * tileSize];
+		for (int k = 0; k < nbTiles; k++) {
+			indexes[k] = this.readTileIndex();
+			// The cases of a tile are read at once
+			this.input.readFully(bytes);
+			tiles[k] = new int[tileSize];
+			ByteBuffer.wrap(bytes).asIntBuffer().get(tiles[k]);
+		}
+		synchronized (this) {
+			// The tiles which are not given are emptied
+			boolean[] given = new boolean[this.tilesX * this.tilesY];
+			for (int k = 0; k < nbTiles; k++) {
+				given[indexes[k]] = true;
+				for (int i = 0; i < tileSize; i++) {
+					this.setCell(indexes[k], i, tiles[k][i]);
+				}
+			}
+			boolean sameTiles = this.grid.getTileShift() == this.tileShift;
+			for (int t = 0; t < given.length; t++) {
+				if (given[t] || (sameTiles && this.grid.isEmptyTile(t / this.tilesY, t % this.tilesY))) {
+					continue;
+				}
+				for (int i = 0; i < tileSize; i++) {
+					this.setCell(t, i, 0);
+				}
+			}
+			this.nbFrames++;
+		}
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	private void readDelta() throws IOException {
+		int nbTiles = this.input.readInt();
+		int[] indexes = new int[nbTiles];
+		int[][] offsets = new int[nbTiles][];
+		int[][] cells = new int[nbTiles][];
+		for (int k = 0; k < nbTiles; k++) {
+			indexes[k] = this.readTileIndex();
+			int nbCases = this.input.readUnsignedShort();
+			offsets[k] = new int[nbCases];
+			cells[k] = new int[nbCases];
+			for (int c = 0; c < nbCases; c++) {
+				offsets[k][c] = this.input.readShort() & 0xFFFF;
+				cells[k][c] = this.input.readInt();
+			}
+		}
+		synchronized (this) {
+			for (int k = 0; k < nbTiles; k++) {
+				for (int c = 0; c < offsets[k].length; c++) {
+					this.setCell(indexes[k], offsets[k][c], cells[k][c]);
+				}
+			}
+			this.nbFrames++;
+		}
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	private void readStats() throws IOException {
+		int refreshRate = this.input.readInt();
+		long lostJewels = this.input.readLong();
+		synchronized (this) {
+			this.refreshRate = refreshRate;
+			this.lostJewels = lostJewels;
+			this.stats = true;
+		}
+	}
+
+	/**
+	 * @return tileIndex
+	 * @throws IOException
+	 * If the tile does not exist
+	 */
+	private int readTileIndex() throws IOException {
+		int t = this.input.readInt();
+		if (t < 0 || t >= this.tilesX * this.tilesY) {
+			throw new IOException("Unknown tile " + t);
+		}
+		return t;
+	}
+
+	/** Sets a case given by its tile and its offset in the tile, ignored if it is outside of the grid
+	 * @param t
+	 * @param i
+	 * @param cell
+	 */
+	private void setCell(int t, int i, int cell) {
+		int x = ((t / this.tilesY) << this.tileShift) + (i >> this.tileShift);
+		int y = ((t % this.tilesY) << this.tileShift) + (i & this.tileMask);
+		if (this.grid.isInside(x, y)) {
+			this.grid.setCell(x, y, cell);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.socket.close();
+	}
+
+}
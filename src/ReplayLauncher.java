@@ -0,0 +1,28 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import Agents.Manor;
+import Recording.EventLogReader;
+
+public class ReplayLauncher {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage : ReplayLauncher <event log>");
+			return;
+		}
+		// The events are applied to a new manor of the recorded size, without any robot or GUI
+		try (EventLogReader reader = new EventLogReader(Paths.get(args[0]))) {
+			Manor manor = new Manor(reader.getSizeX(), reader.getSizeY());
+			long start = System.nanoTime();
+			long nbEvents = reader.replay(manor);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println("Events : " + nbEvents + " in " + seconds + " s");
+			System.out.println("Events per second : " + (long) (nbEvents / seconds));
+			System.out.println("Lost points : " + manor.getLostPoints());
+			System.out.println("Objectives left : " + manor.getRooms().getObjectiveCount());
+			System.out.println("Walls : " + manor.getRooms().getWallCount());
+		}
+	}
+
+}
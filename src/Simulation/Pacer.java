@@ -0,0 +1,21 @@
+package Simulation;
+
+/* Decides how the virtual clock of the simulator relates to the wall clock
+ */
+public interface Pacer {
+	
+	/** No pacing at all : the simulation runs as fast as possible */
+	Pacer NONE = new Pacer() {
+		@Override
+		public void pace(long virtualTime) {
+		}
+	};
+	
+	/** Called before the events scheduled at the given virtual time are executed,
+	 * may block until the corresponding wall time is reached
+	 * @param virtualTime
+	 * @throws InterruptedException
+	 */
+	void pace(long virtualTime) throws InterruptedException;
+	
+}
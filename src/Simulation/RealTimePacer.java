@@ -0,0 +1,43 @@
+package Simulation;
+
+import java.util.concurrent.TimeUnit;
+
+/* Pacing adapter keeping the virtual clock in step with the wall clock,
+ * used to run the simulation in front of the GUI
+ */
+public class RealTimePacer implements Pacer {
+	
+	private double speed;
+	private long startNanos;
+	private boolean started;
+	
+	/** Real time pacing : one virtual millisecond lasts one wall millisecond
+	 */
+	public RealTimePacer() {
+		this(1.0);
+	}
+	
+	/**
+	 * @param speed
+	 * How many virtual milliseconds elapse during one wall millisecond
+	 */
+	public RealTimePacer(double speed) {
+		this.speed = speed;
+		this.started = false;
+	}
+	
+	@Override
+	public void pace(long virtualTime) throws InterruptedException {
+		// The wall clock starts with the first event
+		if (!this.started) {
+			this.startNanos = System.nanoTime();
+			this.started = true;
+		}
+		long targetNanos = this.startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(virtualTime) / this.speed);
+		long remaining = targetNanos - System.nanoTime();
+		if (remaining > 0) {
+			TimeUnit.NANOSECONDS.sleep(remaining);
+		}
+	}
+	
+}
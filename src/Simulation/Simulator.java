@@ -0,0 +1,117 @@
+package Simulation;
+
+import java.util.PriorityQueue;
+
+/* Discrete-event simulator : the agents are stepped from a single queue ordered
+ * by virtual time, without any thread nor sleep
+ */
+public class Simulator {
+	
+	private PriorityQueue<Event> queue;
+	private Pacer pacer;
+	// Current virtual time, in milliseconds
+	private long clock;
+	// Used to keep the scheduling order between events happening at the same time
+	private long sequence;
+	private long steps;
+	
+	/** Headless simulator, running as fast as possible
+	 */
+	public Simulator() {
+		this(Pacer.NONE);
+	}
+	
+	/**
+	 * @param pacer
+	 */
+	public Simulator(Pacer pacer) {
+		this.queue = new PriorityQueue<Event>();
+		this.pacer = pacer;
+		this.clock = 0;
+		this.sequence = 0;
+		this.steps = 0;
+	}
+	
+	/**
+	 * @return clock
+	 * The current virtual time, in milliseconds
+	 */
+	public long getTime() {
+		return this.clock;
+	}
+	
+	/**
+	 * @return steps
+	 * The number of agent steps executed so far
+	 */
+	public long getSteps() {
+		return this.steps;
+	}
+	
+	/** Schedules the first step of an agent, the next ones follow its period
+	 * @param agent
+	 * @param delay
+	 * Virtual time before the first step
+	 */
+	public void schedule(Steppable agent, long delay) {
+		this.queue.add(new Event(agent, this.clock + delay, this.sequence++));
+	}
+	
+	/** Runs the events until the virtual clock reaches the given time
+	 * @param endTime
+	 * @return steps
+	 * The number of steps executed during this call
+	 * @throws InterruptedException
+	 */
+	public long runUntil(long endTime) throws InterruptedException {
+		long executed = 0;
+		Event event = this.queue.peek();
+		while (event != null && event.time <= endTime) {
+			this.queue.poll();
+			this.pacer.pace(event.time);
+			this.clock = event.time;
+			event.agent.step();
+			executed++;
+			// The event is reused for the next step of the agent
+			event.time += event.agent.getPeriod();
+			event.sequence = this.sequence++;
+			this.queue.add(event);
+			event = this.queue.peek();
+		}
+		this.clock = Math.max(this.clock, endTime);
+		this.steps += executed;
+		return executed;
+	}
+	
+	/** Runs the simulation permanently
+	 * @throws InterruptedException
+	 */
+	public void run() throws InterruptedException {
+		this.runUntil(Long.MAX_VALUE);
+	}
+	
+	/* A scheduled step of an agent
+	 */
+	private static class Event implements Comparable<Event> {
+		
+		private Steppable agent;
+		private long time;
+		private long sequence;
+		
+		private Event(Steppable agent, long time, long sequence) {
+			this.agent = agent;
+			this.time = time;
+			this.sequence = sequence;
+		}
+		
+		@Override
+		public int compareTo(Event e) {
+			if (this.time != e.time) {
+				return this.time < e.time ? -1 : 1;
+			}
+			return Long.compare(this.sequence, e.sequence);
+		}
+		
+	}
+	
+}
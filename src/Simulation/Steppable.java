@@ -0,0 +1,17 @@
+package Simulation;
+
+/* An agent which can be driven step by step by the simulator
+ */
+public interface Steppable {
+	
+	/** Performs one step of the agent (one action, one modification of the environment...)
+	 */
+	void step();
+	
+	/**
+	 * @return period
+	 * The virtual time (in milliseconds) between two steps of the agent
+	 */
+	long getPeriod();
+	
+}
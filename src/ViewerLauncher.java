@@ -0,0 +1,33 @@
+import java.io.IOException;
+
+import GUI.GridFrame;
+import Recording.GridStreamReader;
+
+public class ViewerLauncher {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage : ViewerLauncher [host] <port>");
+			return;
+		}
+		// The manor is published by a simulation launched with a viewer port (see HeadlessLauncher)
+		String host = args.length > 1 ? args[0] : "localhost";
+		int port = Integer.parseInt(args[args.length > 1 ? 1 : 0]);
+		try (GridStreamReader reader = new GridStreamReader(host, port)) {
+			// The map is rebuilt from the frames of the stream, and drawn like the one of GUILauncher
+			GridFrame gui = new GridFrame(reader.getGrid(), reader);
+			// The robot info is shown once the simulation has sent it
+			gui.setRobotInfoShown(false);
+			while (reader.readFrame()) {
+				if (reader.hasStats()) {
+					gui.updateRefreshRate(reader.getRefreshRate());
+					gui.setLostJewels((int) reader.getLostJewels());
+					gui.setRobotInfoShown(true);
+				}
+				gui.update();
+			}
+			System.out.println("End of the stream after " + reader.getFrameCount() + " frames");
+		}
+	}
+
+}
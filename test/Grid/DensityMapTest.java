@@ -0,0 +1,221 @@
+package Grid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/* Checks the sums of the density map against sums of the cases, over random modifications of a grid
+ * whose size is not a multiple of the blocks
+ */
+public class DensityMapTest {
+
+	private static final int SIZE_X = 203;
+	private static final int SIZE_Y = 150;
+	private static final int NB_MODIFICATIONS = 50000;
+
+	/** Sums the cases of a rectangle of blocks, one by one
+	 * @param grid
+	 * @param shift
+	 * The blocks contain 2^shift x 2^shift cases
+	 * @param bx0
+	 * @param by0
+	 * @param bx1
+	 * @param by1
+	 * @return sums
+	 * The dust, the jewels, the robots and the walls of the blocks
+	 */
+	private static long[] bruteForce(Grid grid, int shift, int bx0, int by0, int bx1, int by1) {
+		long[] sums = new long[4];
+		for (int x = bx0 << shift; x < Math.min((bx1 + 1) << shift, grid.getSizeX()); x++) {
+			for (int y = by0 << shift; y < Math.min((by1 + 1) << shift, grid.getSizeY()); y++) {
+				int cell = grid.getCell(x, y);
+				sums[0] += Grid.dustLevel(cell);
+				sums[1] += Grid.hasJewel(cell) ? 1 : 0;
+				sums[2] += Grid.isRobot(cell) ? 1 : 0;
+				sums[3] += Grid.isWall(cell) ? 1 : 0;
+			}
+		}
+		return sums;
+	}
+
+	/** Modifies a random case like the simulation does
+	 * @param grid
+	 * @param random
+	 */
+	private static void modify(Grid grid, Random random) {
+		int x = random.nextInt(SIZE_X);
+		int y = random.nextInt(SIZE_Y);
+		switch (random.nextInt(8)) {
+		case 0: grid.addJewel(x, y);
+			break;
+		case 1: grid.removeJewel(x, y);
+			break;
+		case 2: grid.setRobot(x, y, random.nextInt(10) - 1);
+			break;
+		case 3: grid.setWall(x, y, random.nextBoolean());
+			break;
+		case 4: grid.removeDust(x, y);
+			break;
+		case 5: grid.setCell(x, y, 0);
+			break;
+		default: grid.addDust(x, y);
+		}
+	}
+
+	@Test
+	public void rectanglesMatchTheCases() {
+		Random random = new Random(42);
+		Grid grid = new Grid(SIZE_X, SIZE_Y);
+		// Some cases are set before the map is created, the others after
+		for (int n = 0; n < 2000; n++) {
+			modify(grid, random);
+		}
+		DensityMap density = grid.getDensityMap();
+		for (int n = 0; n < NB_MODIFICATIONS; n++) {
+			modify(grid, random);
+			int bx0 = random.nextInt(density.getBlocksX());
+			int by0 = random.nextInt(density.getBlocksY());
+			int bx1 = bx0 + random.nextInt(density.getBlocksX() - bx0);
+			int by1 = by0 + random.nextInt(density.getBlocksY() - by0);
+			long[] expected = bruteForce(grid, DensityMap.BLOCK_SHIFT, bx0, by0, bx1, by1);
+			assertEquals(expected[0], density.getDust(bx0, by0, bx1, by1));
+			assertEquals(expected[1], density.getJewels(bx0, by0, bx1, by1));
+			assertEquals(expected[2], density.getRobots(bx0, by0, bx1, by1));
+			assertEquals(expected[3], density.getWalls(bx0, by0, bx1, by1));
+		}
+	}
+
+	@Test
+	public void unalignedRectanglesMatchTheCases() {
+		Random random = new Random(11);
+		Grid grid = new Grid(SIZE_X, SIZE_Y);
+		DensityMap density = grid.getDensityMap();
+		for (int n = 0; n < NB_MODIFICATIONS; n++) {
+			modify(grid, random);
+			if (n % 10 != 0) {
+				continue;
+			}
+			// Rectangles of any size, from a single case to the whole grid, some of them outside of it
+			int x0 = random.nextInt(SIZE_X + 10) - 5;
+			int y0 = random.nextInt(SIZE_Y + 10) - 5;
+			int x1 = x0 + random.nextInt(n % 20 == 0 ? SIZE_X : 40);
+			int y1 = y0 + random.nextInt(n % 20 == 0 ? SIZE_Y : 40);
+			long dust = 0;
+			int jewels = 0;
+			for (int x = Math.max(x0, 0); x <= Math.min(x1, SIZE_X - 1); x++) {
+				for (int y = Math.max(y0, 0); y <= Math.min(y1, SIZE_Y - 1); y++) {
+					dust += Grid.dustLevel(grid.getCell(x, y));
+					jewels += Grid.hasJewel(grid.getCell(x, y)) ? 1 : 0;
+				}
+			}
+			assertEquals(dust, density.getCasesDust(x0, y0, x1, y1));
+			assertEquals(jewels, density.getCasesJewels(x0, y0, x1, y1));
+		}
+		assertEquals(bruteForce(grid, DensityMap.BLOCK_SHIFT, 0, 0, density.getBlocksX() - 1, density.getBlocksY() - 1)[0],
+				density.getCasesDust(0, 0, SIZE_X - 1, SIZE_Y - 1));
+	}
+
+	@Test
+	public void levelsMatchTheCases() {
+		Random random = new Random(7);
+		Grid grid = new Grid(SIZE_X, SIZE_Y);
+		DensityMap density = grid.getDensityMap();
+		for (int n = 0; n < NB_MODIFICATIONS; n++) {
+			modify(grid, random);
+			if (n % 5000 != 0) {
+				continue;
+			}
+			for (int level = 0; level < density.getLevelCount(); level++) {
+				int nbX = density.getBlocksX(level);
+				int nbY = density.getBlocksY(level);
+				long[] dust = new long[nbX * nbY];
+				int[] jewels = new int[nbX * nbY];
+				int[] robots = new int[nbX * nbY];
+				int[] walls = new int[nbX * nbY];
+				density.copyBlocks(level, 0, 0, nbX, nbY, dust, jewels, robots, walls);
+				int shift = density.getLevelShift(level);
+				for (int a = 0; a < nbX; a++) {
+					for (int b = 0; b < nbY; b++) {
+						long[] expected = bruteForce(grid, shift, a, b, a, b);
+						int k = a * nbY + b;
+						assertEquals(expected[0], dust[k]);
+						assertEquals(expected[1], jewels[k]);
+						assertEquals(expected[2], robots[k]);
+						assertEquals(expected[3], walls[k]);
+					}
+				}
+			}
+		}
+		// The single block of the last level covers the whole grid
+		assertEquals(1, density.getBlocksX(density.getLevelCount() - 1));
+		assertEquals(1, density.getBlocksY(density.getLevelCount() - 1));
+	}
+
+	@Test
+	public void dirtiestRegionsAreSorted() {
+		Random random = new Random(3);
+		Grid grid = new Grid(SIZE_X, SIZE_Y);
+		DensityMap density = grid.getDensityMap();
+		for (int n = 0; n < NB_MODIFICATIONS; n++) {
+			modify(grid, random);
+		}
+		int level = 1;
+		int shift = density.getLevelShift(level);
+		List<Coordinates> regions = density.getDirtiestRegions(level, 5);
+		assertEquals(5, regions.size());
+		long last = Long.MAX_VALUE;
+		Set<Long> given = new HashSet<Long>();
+		for (Coordinates region : regions) {
+			given.add(Grid.key(region.x, region.y));
+			long dust = bruteForce(grid, shift, region.x >> shift, region.y >> shift, region.x >> shift, region.y >> shift)[0];
+			assertTrue(dust <= last);
+			last = dust;
+		}
+		// No other region has more dust than the last one given
+		for (int a = 0; a < density.getBlocksX(level); a++) {
+			for (int b = 0; b < density.getBlocksY(level); b++) {
+				if (!given.contains(Grid.key(a << shift, b << shift))) {
+					assertTrue(bruteForce(grid, shift, a, b, a, b)[0] <= last);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void concurrentModificationsAreAllCounted() throws InterruptedException {
+		final Grid grid = new Grid(256, 256);
+		final DensityMap density = grid.getDensityMap();
+		// Each thread modifies its own band of tiles, the bands sharing the nodes of the trees
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int band = t;
+			threads[t] = new Thread(() -> {
+				Random random = new Random(band);
+				for (int n = 0; n < NB_MODIFICATIONS; n++) {
+					int x = band * 64 + random.nextInt(64);
+					int y = random.nextInt(256);
+					if (random.nextInt(3) == 0) {
+						grid.removeDust(x, y);
+					} else {
+						grid.addDust(x, y);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(bruteForce(grid, DensityMap.BLOCK_SHIFT, 0, 0, 15, 15)[0], density.getDust(0, 0, 15, 15));
+		for (int bx = 0; bx < density.getBlocksX(); bx++) {
+			assertEquals(bruteForce(grid, DensityMap.BLOCK_SHIFT, bx, 0, bx, 15)[0], density.getDust(bx, 0, bx, 15));
+		}
+	}
+
+}
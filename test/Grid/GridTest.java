@@ -0,0 +1,195 @@
+package Grid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/* Checks the sparse tiles, the copies sharing them until they are modified, and the grids mapped from a file,
+ * against the cases expected after random modifications
+ */
+public class GridTest {
+
+	private static final int SIZE_X = 300;
+	private static final int SIZE_Y = 170;
+	private static final int NB_MODIFICATIONS = 30000;
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		this.directory = Files.createTempDirectory("grid-test");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		try (Stream<Path> files = Files.list(this.directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(this.directory);
+	}
+
+	/** Modifies a random case like the simulation does, in the grid and in the expected cases
+	 * @param grid
+	 * @param expected
+	 * The expected cases, [x][y]
+	 * @param random
+	 */
+	private static void modify(Grid grid, int[][] expected, Random random) {
+		int x = random.nextInt(grid.getSizeX());
+		int y = random.nextInt(grid.getSizeY());
+		switch (random.nextInt(7)) {
+		case 0: grid.addJewel(x, y);
+			break;
+		case 1: grid.removeJewel(x, y);
+			break;
+		case 2: grid.setRobot(x, y, random.nextInt(10) - 1);
+			break;
+		case 3: grid.setWall(x, y, random.nextBoolean());
+			break;
+		case 4: grid.removeDust(x, y);
+			break;
+		case 5: grid.setCell(x, y, 0);
+			break;
+		default: grid.addDust(x, y);
+		}
+		expected[x][y] = grid.getCell(x, y);
+	}
+
+	/** Checks every case of a grid, and the counts kept by the grid
+	 * @param expected
+	 * @param grid
+	 */
+	private static void assertCases(int[][] expected, Grid grid) {
+		int nbWalls = 0;
+		int nbObjectives = 0;
+		for (int x = 0; x < grid.getSizeX(); x++) {
+			for (int y = 0; y < grid.getSizeY(); y++) {
+				assertEquals("[" + x + "," + y + "]", expected[x][y], grid.getCell(x, y));
+				nbWalls += Grid.isWall(expected[x][y]) ? 1 : 0;
+				nbObjectives += Grid.isObjective(expected[x][y]) ? 1 : 0;
+			}
+		}
+		assertEquals(nbWalls, grid.getWallCount());
+		assertEquals(nbObjectives, grid.getObjectiveCount());
+	}
+
+	/**
+	 * @param cases
+	 * @return copy
+	 */
+	private static int[][] copy(int[][] cases) {
+		int[][] copy = new int[cases.length][];
+		for (int x = 0; x < cases.length; x++) {
+			copy[x] = cases[x].clone();
+		}
+		return copy;
+	}
+
+	/** Modifies a grid while copies are taken, then checks the grid and every copy
+	 * @param grid
+	 * @param random
+	 * @return expected
+	 * The cases of the grid
+	 */
+	private static int[][] modifyAndCopy(Grid grid, Random random) {
+		int[][] expected = new int[grid.getSizeX()][grid.getSizeY()];
+		List<Grid> copies = new ArrayList<Grid>();
+		List<int[][]> copiesExpected = new ArrayList<int[][]>();
+		for (int n = 0; n < NB_MODIFICATIONS; n++) {
+			modify(grid, expected, random);
+			if (n % 5000 == 0) {
+				copies.add(new Grid(grid));
+				copiesExpected.add(copy(expected));
+			}
+			if (n % 7000 == 0 && !copies.isEmpty()) {
+				// A copy modified in turn does not change the grid nor the other copies
+				Grid modified = copies.get(copies.size() - 1);
+				for (int k = 0; k < 500; k++) {
+					modify(modified, copiesExpected.get(copies.size() - 1), random);
+				}
+			}
+		}
+		assertCases(expected, grid);
+		for (int c = 0; c < copies.size(); c++) {
+			assertCases(copiesExpected.get(c), copies.get(c));
+		}
+		return expected;
+	}
+
+	@Test
+	public void copiesKeepTheirCases() {
+		modifyAndCopy(new Grid(SIZE_X, SIZE_Y), new Random(5));
+	}
+
+	@Test
+	public void onlyTheNonEmptyTilesAreAllocated() {
+		Grid grid = new Grid(4096, 4096);
+		assertEquals(0, grid.getAllocatedTileCount());
+		grid.addDust(10, 10);
+		grid.addDust(4000, 20);
+		assertEquals(2, grid.getAllocatedTileCount());
+		assertTrue(grid.isEmptyTile(1, 1));
+		grid.removeDust(10, 10);
+		assertEquals(1, grid.getAllocatedTileCount());
+		assertFalse(grid.isEmptyTile(4000 >> grid.getTileShift(), 20 >> grid.getTileShift()));
+	}
+
+	@Test
+	public void mappedGridIsFoundAgain() throws IOException {
+		Path file = this.directory.resolve("manor.grid");
+		Grid grid = Grid.map(file, SIZE_X, SIZE_Y);
+		assertTrue(grid.isMapped());
+		int[][] expected = modifyAndCopy(grid, new Random(9));
+		grid.flush();
+		Grid remapped = Grid.map(file);
+		assertEquals(SIZE_X, remapped.getSizeX());
+		assertEquals(SIZE_Y, remapped.getSizeY());
+		assertCases(expected, remapped);
+		assertEquals(grid.getAllocatedTileCount(), remapped.getAllocatedTileCount());
+		// Mapped again with its size, as a simulation starting on an existing file does
+		assertCases(expected, Grid.map(file, SIZE_X, SIZE_Y));
+		int[] cells = new int[SIZE_X * SIZE_Y];
+		remapped.readCases(0, 0, SIZE_X - 1, SIZE_Y - 1, cells);
+		int[] expectedCells = new int[SIZE_X * SIZE_Y];
+		for (int x = 0; x < SIZE_X; x++) {
+			System.arraycopy(expected[x], 0, expectedCells, x * SIZE_Y, SIZE_Y);
+		}
+		assertArrayEquals(expectedCells, cells);
+	}
+
+	@Test
+	public void mappedGridOfAnotherSizeIsRejected() throws IOException {
+		Path file = this.directory.resolve("manor.grid");
+		Grid.map(file, SIZE_X, SIZE_Y).flush();
+		try {
+			Grid.map(file, SIZE_Y, SIZE_X);
+			fail("A grid of another size has been mapped");
+		} catch (IOException e) {
+			// Expected
+		}
+		Files.write(this.directory.resolve("other.grid"), new byte[] { 1, 2, 3 });
+		try {
+			Grid.map(this.directory.resolve("other.grid"));
+			fail("A file which is not a grid has been mapped");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+}